@@ -0,0 +1,177 @@
+package ai;
+
+import logic.PackedMove;
+import logic.Piece;
+import logic.Position;
+
+/**
+ * Sorts the moves of a position so the search tries the likely best ones
+ * first, which is where alpha-beta gets its cutoffs from:
+ * the move stored in the transposition table, captures by most valuable
+ * victim / least valuable attacker (MVV-LVA), two killer moves per ply,
+ * the remaining quiet moves by their history score and last the captures
+ * that lose material by static exchange evaluation.
+ *
+ * Killers and history are kept from one search to the next, the history is
+ * halved at the start of a search so older results count less.
+ */
+public class MoveOrdering {
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 29; // also for promotions
+    private static final int KILLER_SCORE = 1 << 28; // second killer gets one less
+    private static final int MAX_HISTORY = 1 << 27; // history scores stay below the killers
+    private static final int LOSING_CAPTURE_SCORE = -(1 << 29); // below all quiet moves
+
+    // value of the piece types for MVV-LVA, indexed by Piece.TYPE_..
+    private static final int[] PIECE_ORDER_VALUES = {0, 5, 3, 3, 9, 20, 1};
+
+    private final int[][] killers;
+    // indexed by color, then source square << 6 | target square
+    private final int[][] history = new int[2][64 * 64];
+    private final StaticExchange staticExchange = new StaticExchange();
+
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    /**
+     * @param maxPly number of plies to keep killer moves for
+     */
+    public MoveOrdering(int maxPly) {
+        this.killers = new int[maxPly][2];
+    }
+
+    /**
+     * start a new search: halve the history and reset the statistics
+     */
+    public void newSearch() {
+        for (int[] colorHistory : history) {
+            for (int i = 0; i < colorHistory.length; i++) {
+                colorHistory[i] >>= 1;
+            }
+        }
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+
+    /**
+     * write a sort score for every move into scores
+     * @param hashMove best move from the transposition table, PackedMove.NONE if there is none
+     */
+    public void scoreMoves(Position position, int[] moves, int[] scores, int count, int ply, int hashMove) {
+        int[] colorHistory = history[position.getSideToMove()];
+        int[] plyKillers = killers[ply];
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (move == hashMove) {
+                scores[i] = HASH_MOVE_SCORE;
+            } else if (PackedMove.isCapture(move) || PackedMove.isPromotion(move)) {
+                scores[i] = (staticExchange.isLosing(position, move) ? LOSING_CAPTURE_SCORE : CAPTURE_SCORE)
+                        + 16 * victimValue(position, move)
+                        + PIECE_ORDER_VALUES[PackedMove.getPromotionType(move)]
+                        - PIECE_ORDER_VALUES[position.getTypeAt(PackedMove.getSource(move))];
+            } else if (move == plyKillers[0]) {
+                scores[i] = KILLER_SCORE;
+            } else if (move == plyKillers[1]) {
+                scores[i] = KILLER_SCORE - 1;
+            } else {
+                scores[i] = colorHistory[fromTo(move)];
+            }
+        }
+    }
+
+    /**
+     * write the history score of every quiet move from index from to index to (exclusive) into scores
+     */
+    public void scoreQuietMoves(Position position, int[] moves, int[] scores, int from, int to) {
+        int[] colorHistory = history[position.getSideToMove()];
+        for (int i = from; i < to; i++) {
+            scores[i] = colorHistory[fromTo(moves[i])];
+        }
+    }
+
+    /**
+     * @param index 0 for the killer that caused the latest cutoff, 1 for the one before
+     * @return killer move of the ply, PackedMove.NONE if there is none
+     */
+    public int getKiller(int ply, int index) {
+        return killers[ply][index];
+    }
+
+    /**
+     * move the best scored of the moves from index on to index, a selection
+     * sort step; the moves after a cutoff are never sorted
+     * @return the move now at index
+     */
+    public static int pickMove(int[] moves, int[] scores, int count, int index) {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) best = i;
+        }
+        int move = moves[best];
+        if (best != index) {
+            moves[best] = moves[index];
+            moves[index] = move;
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+        }
+        return move;
+    }
+
+    /**
+     * @param score - sort score of a move from {@link #scoreMoves}
+     * @return true if the move is a capture or promotion that loses material
+     */
+    public static boolean isLosingCapture(int score) {
+        return score < 0;
+    }
+
+    /**
+     * remember a move that caused a beta cutoff
+     * @param color side that played the move
+     * @param moveIndex position of the move in the sorted moves, 0 if it was tried first
+     */
+    public void addCutoff(int move, int color, int depth, int ply, int moveIndex) {
+        cutoffs++;
+        if (moveIndex == 0) firstMoveCutoffs++;
+        if (PackedMove.isCapture(move) || PackedMove.isPromotion(move)) return;
+
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != move) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+
+        int[] colorHistory = history[color];
+        colorHistory[fromTo(move)] += depth * depth;
+        if (colorHistory[fromTo(move)] >= MAX_HISTORY) {
+            for (int i = 0; i < colorHistory.length; i++) {
+                colorHistory[i] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * @return beta cutoffs since the start of the search
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * @return beta cutoffs since the start of the search caused by the first move tried
+     */
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    private static int victimValue(Position position, int move) {
+        if (!PackedMove.isCapture(move)) return 0;
+        if (PackedMove.isEnPassant(move)) return PIECE_ORDER_VALUES[Piece.TYPE_PAWN];
+        return PIECE_ORDER_VALUES[position.getTypeAt(PackedMove.getTarget(move))];
+    }
+
+    private static int fromTo(int move) {
+        return move & ((1 << 12) - 1);
+    }
+}
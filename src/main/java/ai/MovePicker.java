@@ -0,0 +1,156 @@
+package ai;
+
+import logic.MoveGenerator;
+import logic.PackedMove;
+import logic.Position;
+
+/**
+ * Hands out the moves of a position one at a time, in stages: the hash
+ * move, the captures that do not lose material, the killer moves, the
+ * quiet moves by history and last the losing captures. A stage is only
+ * generated once the moves before it are used up, so a cutoff by the hash
+ * move or a capture never generates the quiet moves.
+ *
+ * The hash move and the killers come from other searches and are checked
+ * for legality before they are handed out. Every ply of a search needs its
+ * own picker.
+ */
+public class MovePicker {
+    private static final int STAGE_HASH_MOVE = 0;
+    private static final int STAGE_GENERATE_CAPTURES = 1;
+    private static final int STAGE_GOOD_CAPTURES = 2;
+    private static final int STAGE_KILLERS = 3;
+    private static final int STAGE_GENERATE_QUIETS = 4;
+    private static final int STAGE_QUIETS = 5;
+    private static final int STAGE_BAD_CAPTURES = 6;
+    private static final int STAGE_DONE = 7;
+
+    private final MoveOrdering moveOrdering;
+    // captures first, the quiet moves after them
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+    private final int[] legalityBuffer = new int[MoveGenerator.MAX_MOVES];
+
+    private Position position;
+    private int color;
+    private int ply;
+    private int hashMove;
+    private int stage;
+    private int index;
+    private int captureCount; // captures in moves
+    private int badCaptureIndex; // first losing capture in moves
+    private int count; // all moves in moves
+    private int killerIndex;
+
+    /**
+     * @param moveOrdering - killers and history of the search the picker belongs to
+     */
+    public MovePicker(MoveOrdering moveOrdering) {
+        this.moveOrdering = moveOrdering;
+    }
+
+    /**
+     * start on a new position
+     * @param hashMove best move from the transposition table, PackedMove.NONE if there is none
+     */
+    public void reset(Position position, int ply, int hashMove) {
+        this.position = position;
+        this.color = position.getSideToMove();
+        this.ply = ply;
+        this.hashMove = hashMove;
+        this.stage = STAGE_HASH_MOVE;
+        this.index = 0;
+        this.captureCount = 0;
+        this.badCaptureIndex = 0;
+        this.count = 0;
+        this.killerIndex = 0;
+    }
+
+    /**
+     * @return the next move to search, PackedMove.NONE if there are no more
+     */
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case STAGE_HASH_MOVE:
+                    stage = STAGE_GENERATE_CAPTURES;
+                    if (MoveGenerator.isLegalMove(position, color, hashMove, legalityBuffer)) return hashMove;
+                    break;
+
+                case STAGE_GENERATE_CAPTURES:
+                    captureCount = MoveGenerator.generateLegalCaptures(position, color, moves);
+                    moveOrdering.scoreMoves(position, moves, scores, captureCount, ply, PackedMove.NONE);
+                    badCaptureIndex = captureCount;
+                    index = 0;
+                    stage = STAGE_GOOD_CAPTURES;
+                    break;
+
+                case STAGE_GOOD_CAPTURES:
+                    while (index < captureCount) {
+                        int move = MoveOrdering.pickMove(moves, scores, captureCount, index);
+                        if (MoveOrdering.isLosingCapture(scores[index])) {
+                            // sorted, the rest lose material too
+                            badCaptureIndex = index;
+                            break;
+                        }
+                        index++;
+                        if (move != hashMove) return move;
+                    }
+                    stage = STAGE_KILLERS;
+                    break;
+
+                case STAGE_KILLERS:
+                    while (killerIndex < 2) {
+                        int killer = moveOrdering.getKiller(ply, killerIndex++);
+                        if (killer != hashMove && MoveGenerator.isLegalMove(position, color, killer, legalityBuffer)) {
+                            return killer;
+                        }
+                    }
+                    stage = STAGE_GENERATE_QUIETS;
+                    break;
+
+                case STAGE_GENERATE_QUIETS:
+                    int quietCount = MoveGenerator.generateLegalQuietMoves(position, color, legalityBuffer);
+                    System.arraycopy(legalityBuffer, 0, moves, captureCount, quietCount);
+                    count = captureCount + quietCount;
+                    moveOrdering.scoreQuietMoves(position, moves, scores, captureCount, count);
+                    index = captureCount;
+                    stage = STAGE_QUIETS;
+                    break;
+
+                case STAGE_QUIETS:
+                    while (index < count) {
+                        int move = MoveOrdering.pickMove(moves, scores, count, index);
+                        index++;
+                        if (move != hashMove && !isKiller(move)) return move;
+                    }
+                    index = badCaptureIndex;
+                    stage = STAGE_BAD_CAPTURES;
+                    break;
+
+                case STAGE_BAD_CAPTURES:
+                    while (index < captureCount) {
+                        int move = MoveOrdering.pickMove(moves, scores, captureCount, index);
+                        index++;
+                        if (move != hashMove) return move;
+                    }
+                    stage = STAGE_DONE;
+                    break;
+
+                default:
+                    return PackedMove.NONE;
+            }
+        }
+    }
+
+    /**
+     * @return true if the last move handed out is a capture or promotion that loses material
+     */
+    public boolean isLosingCapture() {
+        return stage == STAGE_BAD_CAPTURES;
+    }
+
+    private boolean isKiller(int move) {
+        return move == moveOrdering.getKiller(ply, 0) || move == moveOrdering.getKiller(ply, 1);
+    }
+}
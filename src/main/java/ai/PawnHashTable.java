@@ -0,0 +1,83 @@
+package ai;
+
+/**
+ * Remembers the evaluation of the Pawn structure by the Pawn key of the
+ * position (see logic.Position#getPawnHash()). The Pawns change in few
+ * moves, so most evaluations find their structure here.
+ *
+ * The table is a small preallocated array with a power of two number of
+ * entries; a new entry always replaces the old one in its slot. It is not
+ * shared between threads.
+ */
+public class PawnHashTable {
+    private final long[] keys;
+    private final int[] middlegameScores; // from the view of white
+    private final int[] endgameScores;
+    private final boolean[] used;
+    private final int mask;
+
+    private long probes;
+    private long hits;
+
+    /**
+     * @param size number of entries, rounded down to a power of two
+     */
+    public PawnHashTable(int size) {
+        size = Integer.highestOneBit(Math.max(size, 1));
+        this.keys = new long[size];
+        this.middlegameScores = new int[size];
+        this.endgameScores = new int[size];
+        this.used = new boolean[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return index of the entry stored for the key, -1 if there is none; read it with the get.. methods
+     */
+    public int probe(long pawnKey) {
+        probes++;
+        int index = (int) pawnKey & mask;
+        if (used[index] && keys[index] == pawnKey) {
+            hits++;
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * store the evaluation of a Pawn structure, replacing whatever was stored in its slot
+     * @return index of the entry
+     */
+    public int store(long pawnKey, int middlegameScore, int endgameScore) {
+        int index = (int) pawnKey & mask;
+        keys[index] = pawnKey;
+        middlegameScores[index] = middlegameScore;
+        endgameScores[index] = endgameScore;
+        used[index] = true;
+        return index;
+    }
+
+    public int getMiddlegameScore(int index) {
+        return middlegameScores[index];
+    }
+
+    public int getEndgameScore(int index) {
+        return endgameScores[index];
+    }
+
+    /**
+     * reset the statistics, the entries are kept
+     */
+    public void newSearch() {
+        probes = 0;
+        hits = 0;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+}
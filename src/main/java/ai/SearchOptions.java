@@ -0,0 +1,55 @@
+package ai;
+
+/**
+ * Switches for the selective parts of the search, so each of them can be
+ * turned off to compare the engine with and without it.
+ */
+public class SearchOptions {
+    /**
+     * let the opponent move twice; if the side to move still holds beta, the
+     * position is not searched any further. Not done in check, without
+     * pieces other than Pawns (zugzwang) or right after another null move.
+     */
+    public boolean nullMove = true;
+
+    /**
+     * plies the search after a null move is shallower than a normal move
+     */
+    public int nullMoveReduction = 2;
+
+    /**
+     * search quiet moves and captures losing material (by static exchange
+     * evaluation) that come late in the move order less deep first, and
+     * fully only if they turn out to raise alpha
+     */
+    public boolean lateMoveReductions = true;
+
+    /**
+     * moves of a position searched to full depth before late moves are reduced
+     */
+    public int fullDepthMoves = 3;
+
+    /**
+     * skip quiet moves next to the leaves if the static evaluation is too far
+     * below alpha for them to catch up
+     */
+    public boolean futilityPruning = true;
+
+    /**
+     * next to the leaves, go to quiescence search right away if the static
+     * evaluation is far below alpha
+     */
+    public boolean razoring = true;
+
+    /**
+     * @return options with all selective parts turned off, a plain alpha-beta search
+     */
+    public static SearchOptions none() {
+        SearchOptions options = new SearchOptions();
+        options.nullMove = false;
+        options.lateMoveReductions = false;
+        options.futilityPruning = false;
+        options.razoring = false;
+        return options;
+    }
+}
@@ -0,0 +1,415 @@
+package ai;
+
+import logic.MoveGenerator;
+import logic.PackedMove;
+import logic.Piece;
+import logic.Position;
+
+/**
+ * The part of the search of {@link SimpleAiPlayerHandler} below the root.
+ * Every thread searching for the handler has its own Searcher with its own
+ * move buffers, principal variation table, killers and history, so threads
+ * only share the transposition table.
+ */
+class Searcher {
+    private static final int MAX_PLY = SimpleAiPlayerHandler.MAX_PLY;
+    private static final int INFINITY = SimpleAiPlayerHandler.INFINITY;
+    private static final int MATE_BOUND = SimpleAiPlayerHandler.MATE_BOUND;
+
+    /**
+     * entries of the Pawn hash table of every Searcher
+     */
+    private static final int PAWN_HASH_TABLE_SIZE = 1 << 14;
+
+    /**
+     * score a capture may gain on top of the captured piece, by position and
+     * follow-up; captures that fall short of alpha even so are not searched
+     */
+    private static final int DELTA_MARGIN = 200;
+
+    /**
+     * by remaining depth: score a quiet move may gain over the static
+     * evaluation, see futility pruning and razoring in SearchOptions
+     */
+    private static final int[] FUTILITY_MARGINS = {0, 200, 500};
+    private static final int[] RAZOR_MARGINS = {0, 300, 600};
+
+    private final SimpleAiPlayerHandler owner;
+    private final TranspositionTable transpositionTable;
+
+    /**
+     * one buffer of packed moves per ply for quiescence search, reused by every search
+     */
+    private final int[][] moveBuffers = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] moveScores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    /**
+     * one staged move picker per ply for the main search
+     */
+    private final MovePicker[] movePickers = new MovePicker[MAX_PLY];
+
+    /**
+     * triangular principal variation table: pvTable[ply] holds the best line
+     * found from ply on, pvLength[ply] moves long
+     */
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+
+    private final MoveOrdering moveOrdering = new MoveOrdering(MAX_PLY);
+    private final PawnHashTable pawnHashTable = new PawnHashTable(PAWN_HASH_TABLE_SIZE);
+    private long nodes; // positions visited by the current search
+    private long quiescenceNodes; // part of nodes visited by quiesce()
+    private long tableProbes; // transposition table probes of this thread
+    private long tableHits;
+
+    Searcher(SimpleAiPlayerHandler owner, TranspositionTable transpositionTable) {
+        this.owner = owner;
+        this.transpositionTable = transpositionTable;
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            this.movePickers[ply] = new MovePicker(this.moveOrdering);
+        }
+    }
+
+    /**
+     * start a new search: reset the node counters and the move ordering statistics
+     */
+    void newSearch() {
+        this.moveOrdering.newSearch();
+        this.pawnHashTable.newSearch();
+        this.nodes = 0;
+        this.quiescenceNodes = 0;
+        this.tableProbes = 0;
+        this.tableHits = 0;
+    }
+
+    long getNodes() {
+        return this.nodes;
+    }
+
+    long getQuiescenceNodes() {
+        return this.quiescenceNodes;
+    }
+
+    long getTableProbes() {
+        return this.tableProbes;
+    }
+
+    long getTableHits() {
+        return this.tableHits;
+    }
+
+    MoveOrdering getMoveOrdering() {
+        return this.moveOrdering;
+    }
+
+    PawnHashTable getPawnHashTable() {
+        return this.pawnHashTable;
+    }
+
+    /**
+     * @return the best line found by the last search of a position at ply
+     */
+    int[] getPrincipalVariation(int ply) {
+        int[] line = new int[this.pvLength[ply]];
+        System.arraycopy(this.pvTable[ply], 0, line, 0, line.length);
+        return line;
+    }
+
+    /**
+     * iterative deepening of a Lazy SMP helper thread until the search is
+     * stopped. It searches the same tree as the main thread, but starts at
+     * another depth and soon differs in the move order, so it fills the
+     * shared transposition table with results the main thread needs next.
+     * @param moves - legal moves of the root position, reordered by the search
+     */
+    void searchHelper(Position position, int[] moves, int count, int startDepth, int maxDepth) {
+        for (int depth = startDepth; depth <= maxDepth; depth++) {
+            int alpha = -INFINITY;
+            int bestIndex = 0;
+            for (int i = 0; i < count; i++) {
+                position.makeMove(moves[i]);
+                int score = -1 * negaMax(position, depth - 1, 1, -INFINITY, -alpha);
+                position.unmakeMove();
+                if (owner.stopped) return;
+
+                if (score > alpha) {
+                    alpha = score;
+                    bestIndex = i;
+                }
+            }
+            // the best move first in the next iteration
+            int bestMove = moves[bestIndex];
+            System.arraycopy(moves, 0, moves, 1, bestIndex);
+            moves[0] = bestMove;
+        }
+    }
+
+    /**
+     * the move at ply is the best so far, followed by the best line after it
+     */
+    private void updatePrincipalVariation(int ply, int move) {
+        int[] line = this.pvTable[ply];
+        int length = Math.min(this.pvLength[ply + 1], MAX_PLY - 1);
+        line[0] = move;
+        System.arraycopy(this.pvTable[ply + 1], 0, line, 1, length);
+        this.pvLength[ply] = length + 1;
+    }
+
+    /**
+     * evaluate the position according to nega max algorithm with alpha-beta
+     * pruning. Fail-soft: a score outside the window is still a bound of the
+     * true value, not just alpha or beta.
+     *
+     * @param position - position to search, moves are made and unmade on it
+     * @param depth - current depth level (number of counter moves that still need to be evaluated)
+     * @param ply - distance to the root, selects the move buffer
+     * @param alpha - score the side to move is already sure to get
+     * @param beta - score the opponent is already sure to hold the side to move to
+     * @return integer score of the position after looking at "depth" counter moves;
+     *         at most alpha if no move reaches alpha, at least beta if a move reaches beta
+     */
+    int negaMax(Position position, int depth, int ply, int alpha, int beta) {
+        if (depth <= 0) {
+            return quiesce(position, ply, alpha, beta);
+        }
+
+        this.nodes++;
+        // report to the owner and look at the clock now and then only
+        if ((this.nodes & 1023) == 0) owner.addNodes(1024);
+        if (owner.stopped) return 0;
+        this.pvLength[ply] = 0;
+        if (isDraw(position)) return 0;
+
+        // a transposition searched at least as deep may give the score right away
+        long key = position.getHash();
+        long entry = this.transpositionTable.probe(key);
+        this.tableProbes++;
+        if (entry != 0) this.tableHits++;
+        if (entry != 0 && TranspositionTable.getDepth(entry) >= depth) {
+            int score = scoreFromTable(TranspositionTable.getScore(entry), ply);
+            switch (TranspositionTable.getBound(entry)) {
+                case TranspositionTable.BOUND_EXACT: return score;
+                case TranspositionTable.BOUND_LOWER: if (score >= beta) return score; break;
+                case TranspositionTable.BOUND_UPPER: if (score <= alpha) return score; break;
+            }
+        }
+
+        int color = position.getSideToMove();
+        boolean inCheck = position.isInCheck(color);
+        SearchOptions options = owner.searchOptions;
+
+        // static evaluation for the pruning next to the leaves
+        int staticEvaluation = 0;
+        if (!inCheck && depth < FUTILITY_MARGINS.length) {
+            staticEvaluation = owner.evaluateState(position, this.pawnHashTable);
+            if (options.razoring && staticEvaluation + RAZOR_MARGINS[depth] <= alpha) {
+                // hopeless unless there is a tactic, only look for that
+                int score = quiesce(position, ply, alpha, beta);
+                if (score <= alpha) return score;
+            }
+        }
+
+        // let the opponent move twice; if beta holds even so, it holds with a move
+        if (options.nullMove && !inCheck && depth >= 3 && beta < INFINITY
+                && position.getLastMove() != PackedMove.NONE && hasPiecesBesidesPawns(position, color)) {
+            int reduction = options.nullMoveReduction + (depth > 6 ? 1 : 0);
+            position.makeNullMove();
+            int score = -1 * negaMax(position, depth - 1 - reduction, ply + 1, -beta, -beta + 1);
+            position.unmakeNullMove();
+            if (owner.stopped) return 0;
+            // a mate found after passing is not proven
+            if (score >= beta) return score >= INFINITY - MATE_BOUND ? beta : score;
+        }
+
+        // the best move of an earlier iteration first, then captures, killers and history;
+        // each stage is generated when the moves before it did not cut off
+        MovePicker movePicker = this.movePickers[ply];
+        int hashMove = entry != 0 ? TranspositionTable.getBestMove(entry) : PackedMove.NONE;
+        movePicker.reset(position, ply, hashMove);
+        int currentMax = Integer.MIN_VALUE;
+        int bestMove = PackedMove.NONE;
+        int originalAlpha = alpha;
+
+        boolean futile = options.futilityPruning && !inCheck && depth < FUTILITY_MARGINS.length
+                && staticEvaluation + FUTILITY_MARGINS[depth] <= alpha;
+
+        int i = 0;
+        for (int move = movePicker.next(); move != PackedMove.NONE; move = movePicker.next(), i++) {
+            boolean quiet = !PackedMove.isCapture(move) && !PackedMove.isPromotion(move);
+            position.makeMove(move);
+            boolean givesCheck = position.isInCheck(1 - color);
+
+            int score;
+            if (futile && quiet && !givesCheck && i > 0) {
+                // cannot reach alpha, its bound is the evaluation plus the margin
+                position.unmakeMove();
+                score = staticEvaluation + FUTILITY_MARGINS[depth];
+                if (score > currentMax) currentMax = score;
+                continue;
+            }
+            if (i == 0) {
+                score = -1 * negaMax(position, depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                // principal variation search: a later move is expected to be worse,
+                // prove it with a null window; a late quiet move or losing capture also less deep
+                int reduction = 0;
+                if (options.lateMoveReductions && (quiet || movePicker.isLosingCapture())
+                        && !inCheck && !givesCheck
+                        && depth >= 3 && i >= options.fullDepthMoves) {
+                    reduction = i >= 2 * options.fullDepthMoves ? 2 : 1;
+                }
+                score = -1 * negaMax(position, depth - 1 - reduction, ply + 1, -alpha - 1, -alpha);
+                if (score > alpha && reduction > 0 && !owner.stopped) {
+                    score = -1 * negaMax(position, depth - 1, ply + 1, -alpha - 1, -alpha);
+                }
+                if (score > alpha && score < beta && !owner.stopped) {
+                    score = -1 * negaMax(position, depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            position.unmakeMove();
+            // the result of an unfinished search is not stored
+            if (owner.stopped) return 0;
+
+            if (score > currentMax) {
+                currentMax = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                }
+                // the opponent will not allow this position
+                if (score >= beta) {
+                    this.moveOrdering.addCutoff(move, color, depth, ply, i);
+                    break;
+                }
+            }
+        }
+
+        if (currentMax == Integer.MIN_VALUE) {
+            // no legal move: checkmate or stalemate
+            return inCheck ? -INFINITY + ply : 0;
+        }
+
+        int bound;
+        if (currentMax >= beta) bound = TranspositionTable.BOUND_LOWER;
+        else if (currentMax <= originalAlpha) bound = TranspositionTable.BOUND_UPPER;
+        else bound = TranspositionTable.BOUND_EXACT;
+        this.transpositionTable.store(key, depth, bound, scoreToTable(currentMax, ply), bestMove);
+        return currentMax;
+    }
+
+    /**
+     * search captures and promotions only, until the position is quiet, so
+     * the evaluation is not taken in the middle of an exchange; captures that
+     * lose material by static exchange evaluation are left out. The side to
+     * move may also stand pat, i.e. keep the static evaluation, as it does
+     * not have to capture. In check all moves are searched.
+     *
+     * @param position - position to search, moves are made and unmade on it
+     * @param ply - distance to the root, selects the move buffer
+     * @param alpha - score the side to move is already sure to get
+     * @param beta - score the opponent is already sure to hold the side to move to
+     * @return integer score of the quiet position, fail-soft like negaMax
+     */
+    int quiesce(Position position, int ply, int alpha, int beta) {
+        this.nodes++;
+        this.quiescenceNodes++;
+        if ((this.nodes & 1023) == 0) owner.addNodes(1024);
+        if (owner.stopped) return 0;
+        this.pvLength[ply] = 0; // the line ends in quiescence search
+        if (isDraw(position)) return 0;
+
+        int color = position.getSideToMove();
+        boolean inCheck = position.isInCheck(color);
+        int currentMax = Integer.MIN_VALUE;
+        if (!inCheck) {
+            int standPat = owner.evaluateState(position, this.pawnHashTable);
+            if (standPat >= beta || ply >= MAX_PLY - 1) return standPat;
+            if (standPat > alpha) alpha = standPat;
+            currentMax = standPat;
+        }
+
+        int[] moves = this.moveBuffers[ply];
+        int count;
+        if (inCheck) {
+            count = MoveGenerator.generateLegalMoves(position, color, moves);
+            if (count == 0) return -INFINITY + ply;
+        } else {
+            // captures and promotions only; skip captures that cannot bring
+            // the score up to alpha even with a margin (delta pruning)
+            int captureCount = MoveGenerator.generateLegalCaptures(position, color, moves);
+            count = 0;
+            for (int i = 0; i < captureCount; i++) {
+                int move = moves[i];
+                if (PackedMove.isPromotion(move)
+                        || currentMax + capturedValue(position, move) + DELTA_MARGIN > alpha) {
+                    moves[count++] = move;
+                }
+            }
+        }
+
+        int[] scores = this.moveScores[ply];
+        this.moveOrdering.scoreMoves(position, moves, scores, count, ply, PackedMove.NONE);
+        for (int i = 0; i < count && ply < MAX_PLY - 1; i++) {
+            int move = MoveOrdering.pickMove(moves, scores, count, i);
+            // the captures that lose material come last, they cannot improve a quiet position
+            if (!inCheck && MoveOrdering.isLosingCapture(scores[i])) break;
+            position.makeMove(move);
+            int score = -1 * quiesce(position, ply + 1, -beta, -alpha);
+            position.unmakeMove();
+            if (owner.stopped) return 0;
+
+            if (score > currentMax) {
+                currentMax = score;
+                if (score > alpha) alpha = score;
+                if (score >= beta) break;
+            }
+        }
+        // in check at the deepest ply, no move was searched
+        return currentMax == Integer.MIN_VALUE ? owner.evaluateState(position, this.pawnHashTable) : currentMax;
+    }
+
+    /**
+     * @return true if the position is a draw by repetition or by the fifty-move
+     *         rule; a position repeated once is scored as a draw already, as it
+     *         can be repeated again
+     */
+    private static boolean isDraw(Position position) {
+        return position.getHalfmoveClock() >= Position.FIFTY_MOVE_RULE_HALF_MOVES || position.isRepetition();
+    }
+
+    /**
+     * mate scores count the plies from the root, the table keeps them as
+     * plies from the stored position, so they fit wherever it is reached again
+     */
+    private static int scoreToTable(int score, int ply) {
+        if (score >= INFINITY - MATE_BOUND) return score + ply;
+        if (score <= -INFINITY + MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    /**
+     * @return score of the table as plies from the root, see {@link #scoreToTable(int, int)}
+     */
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= INFINITY - MATE_BOUND) return score - ply;
+        if (score <= -INFINITY + MATE_BOUND) return score + ply;
+        return score;
+    }
+
+    /**
+     * @return true if the color has a Knight, Bishop, Rook or Queen
+     */
+    private static boolean hasPiecesBesidesPawns(Position position, int color) {
+        return (position.getPieces(color) & ~position.getPieces(color, Piece.TYPE_PAWN)
+                & ~position.getPieces(color, Piece.TYPE_KING)) != 0;
+    }
+
+    /**
+     * @return score of the piece the move captures, 0 if it is no capture
+     */
+    private int capturedValue(Position position, int move) {
+        if (!PackedMove.isCapture(move)) return 0;
+        if (PackedMove.isEnPassant(move)) return owner.evaluator.getPieceValue(Piece.TYPE_PAWN);
+        return owner.evaluator.getPieceValue(position.getTypeAt(PackedMove.getTarget(move)));
+    }
+}
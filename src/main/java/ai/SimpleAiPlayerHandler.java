@@ -7,24 +7,119 @@ import logic.*;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by Yuchen Wang on 9/1/15.
  */
 public class SimpleAiPlayerHandler implements PlayerHandler{
     private ChessGame chessGame;
-    private ChessRule chessRule;
     public ChessBoardGUI chessBoardGUI;
 
     /**
-     * number of moves to look into the future
+     * largest number of moves to look into the future; the search deepens
+     * one move at a time until the budget below is used up
      */
-    public int maxDepth = 2;
+    public int maxDepth = 32;
+
+    /**
+     * time budget per move in milliseconds
+     */
+    public long moveTimeMillis = 1000;
+
+    /**
+     * budget of visited positions per move, 0 for no limit
+     */
+    public long maxNodes = 0;
+
+    /**
+     * selective parts of the search that are turned on
+     */
+    public SearchOptions searchOptions = new SearchOptions();
+
+    /**
+     * evaluation of the positions at the leaves of the search
+     */
+    public TaperedEvaluator evaluator = new TaperedEvaluator(TaperedEvaluator.DEFAULT_WEIGHTS);
+
+    /**
+     * number of threads searching the root moves, one unless the caller
+     * raises it, e.g. to availableProcessors()
+     */
+    public int parallelism = 1;
+
+    /**
+     * instead of splitting the root moves between the threads, let helper
+     * threads search the whole tree at staggered depths (Lazy SMP); they
+     * only help through the shared transposition table
+     */
+    public boolean lazySmp = false;
+
+    /**
+     * deepest ply the search can reach
+     */
+    static final int MAX_PLY = 64;
+
+    /**
+     * bound of all scores, being checkmated at ply scores -INFINITY + ply,
+     * so a shorter mate scores better than a longer one
+     */
+    static final int INFINITY = Integer.MAX_VALUE;
+
+    /**
+     * half width of the first window around the score of the last iteration
+     */
+    private static final int ASPIRATION_WINDOW = 30;
+
+    /**
+     * scores this close to INFINITY are mates, no window is put around them;
+     * no mate is found deeper than MAX_PLY
+     */
+    static final int MATE_BOUND = MAX_PLY;
+
+    private final int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+    private int[] principalVariation = new int[0]; // of the last finished iteration
+
+    /**
+     * default memory of the transposition table in megabytes
+     */
+    public static final int DEFAULT_TABLE_SIZE_MB = 16;
+
+    private final TranspositionTable transpositionTable;
+    private ForkJoinPool pool; // null while the root moves are searched one after another
+
+    // Searchers kept from one search to the next for the move ordering; every
+    // task takes an idle one, so there are never more than threads searching
+    // at the same time, however often the pool replaces its threads
+    private final List<Searcher> searchers = new CopyOnWriteArrayList<Searcher>();
+    private final Deque<Searcher> idleSearchers = new ConcurrentLinkedDeque<Searcher>();
+
+    private final AtomicLong reportedNodes = new AtomicLong(); // nodes the searchers have reported so far
+    private long deadline; // System.currentTimeMillis() the search has to stop at
+    volatile boolean stopped; // budget used up, the running iteration is not finished
+    private int rootScore; // score of the best move of the last searchRoot()
+    private int[] rootLine; // expected line of the last searchRoot()
 
     public SimpleAiPlayerHandler(ChessGame chessGame) {
+        this(chessGame, DEFAULT_TABLE_SIZE_MB);
+    }
+
+    /**
+     * @param tableSizeMB memory of the transposition table in megabytes
+     */
+    public SimpleAiPlayerHandler(ChessGame chessGame, int tableSizeMB) {
         this.chessGame = chessGame;
-        this.chessRule = chessGame.getChessRule();
+        this.transpositionTable = new TranspositionTable(tableSizeMB);
     }
 
     @Override
@@ -41,36 +136,114 @@ public class SimpleAiPlayerHandler implements PlayerHandler{
         ChessConsole.printCurrentGameState(this.chessGame);
         System.out.println("thinking...");
 
-        List<Move> validMoves = generateMoves(false);
-        int bestResult = Integer.MIN_VALUE;
-        Move bestMove = null;
+        // search a copy, the game position is painted by the gui meanwhile
+        Position position = new Position(this.chessGame.getPosition());
+        this.evaluator.prepare(position);
+        this.transpositionTable.newSearch();
+        for (Searcher searcher : this.searchers) {
+            searcher.newSearch();
+        }
+        this.reportedNodes.set(0);
+        this.stopped = false;
+        long startTime = System.currentTimeMillis();
+        this.deadline = startTime + this.moveTimeMillis;
+        if (this.parallelism <= 1) {
+            shutdownPool();
+        } else if (this.pool == null || this.pool.getParallelism() != this.parallelism) {
+            shutdownPool();
+            this.pool = new ForkJoinPool(this.parallelism);
+        }
 
-        for (Move move : validMoves) {
+        int[] moves = this.rootMoves;
+        int count = MoveGenerator.generateLegalMoves(position, position.getSideToMove(), moves);
+        if (count == 0) return null;
+        int bestMove = moves[0]; // in case not even the first iteration finishes
+        List<Future<?>> helpers = startHelpers(position, moves, count);
+
+        // iterative deepening: every finished iteration gives a best move, which
+        // is searched first by the next one
+        int rootMoveCount = count;
+        this.principalVariation = new int[] {bestMove};
+        for (int depth = 1; depth <= Math.min(this.maxDepth, MAX_PLY - 1); depth++) {
+            int move = searchAspiration(position, depth, moves, rootMoveCount);
+            if (this.stopped) break;
+
+            bestMove = move;
+            moveToFront(moves, rootMoveCount, bestMove);
+            this.principalVariation = this.rootLine;
+            System.out.println("depth " + depth + ": " + PackedMove.toString(bestMove) + " score " + this.rootScore
+                    + ", nodes: " + getNodes() + ", " + (System.currentTimeMillis() - startTime) + "ms"
+                    + ", pv: " + getPrincipalVariationString());
+            // a deeper search finds no shorter mate
+            if (this.rootScore >= INFINITY - MATE_BOUND || isOutOfBudget()) break;
+        }
+        stopHelpers(helpers);
+
+        long quiescenceNodes = 0;
+        long cutoffs = 0;
+        long firstMoveCutoffs = 0;
+        long pawnProbes = 0;
+        long pawnHits = 0;
+        for (Searcher searcher : this.searchers) {
+            quiescenceNodes += searcher.getQuiescenceNodes();
+            cutoffs += searcher.getMoveOrdering().getCutoffs();
+            firstMoveCutoffs += searcher.getMoveOrdering().getFirstMoveCutoffs();
+            pawnProbes += searcher.getPawnHashTable().getProbes();
+            pawnHits += searcher.getPawnHashTable().getHits();
+        }
+        System.out.println("done thinking! best move is: " + PackedMove.toString(bestMove)
+                + ", nodes: " + getNodes() + " (quiescence: " + quiescenceNodes + ")"
+                + ", threads: " + Math.max(this.parallelism, 1));
+        System.out.printf("transposition table: hit rate %.1f%%, fill %.1f%%%n",
+                100 * getTableHitRate(), 100 * getTableFillRate());
+        System.out.printf("move ordering: %.1f%% of the cutoffs by the first move%n",
+                cutoffs == 0 ? 0.0 : 100.0 * firstMoveCutoffs / cutoffs);
+        System.out.printf("pawn hash table: hit rate %.1f%%%n", pawnProbes == 0 ? 0.0 : 100.0 * pawnHits / pawnProbes);
+        Move result = PackedMove.toMove(bestMove);
+        result.isAi = true;
+        result.setIsValid(true);
+        return result;
+    }
 
-//            GUIPiece guiPiece = chessBoardGUI.getGuiPieceAt(Piece.ROW_1, Piece.COLUMN_A);
-//            if (guiPiece.toString().equals("white R 1/A 302/402")) {
-//                System.out.println(move.toString());
-//            }
+    /**
+     * for sizing the transposition table
+     * @return share of the transposition table probes of the last search that found an entry
+     */
+    public double getTableHitRate() {
+        long probes = 0;
+        long hits = 0;
+        for (Searcher searcher : this.searchers) {
+            probes += searcher.getTableProbes();
+            hits += searcher.getTableHits();
+        }
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
 
-            executeMove(move);
-//            System.out.println("evaluate move: " + move + " =========================================");
-            int evaluationResult = -1 * negaMax(this.maxDepth, "");
-//            System.out.println("result: " + evaluationResult);
-            undoMove(move);
+    /**
+     * for sizing the transposition table
+     * @return share of the transposition table entries stored by the last search
+     */
+    public double getTableFillRate() {
+        return this.transpositionTable.getFillRate();
+    }
 
-//            guiPiece = chessBoardGUI.getGuiPieceAt(Piece.ROW_1, Piece.COLUMN_A);
-//            if (!guiPiece.toString().equals("white R 1/A 302/402")) {
-//                System.out.println(move.toString());
-//                System.out.println();
-//            }
+    /**
+     * @return packed moves of the line expected after the last search, starting with the move played
+     */
+    public int[] getPrincipalVariation() {
+        return this.principalVariation.clone();
+    }
 
-            if (evaluationResult > bestResult) {
-                bestResult = evaluationResult;
-                bestMove = move;
-            }
+    /**
+     * @return the expected line of the last search, moves separated by blanks
+     */
+    public String getPrincipalVariationString() {
+        StringBuilder result = new StringBuilder();
+        for (int move : this.principalVariation) {
+            if (result.length() > 0) result.append(' ');
+            result.append(PackedMove.toString(move));
         }
-        System.out.println("done thinking! best move is: " + bestMove);
-        return bestMove;
+        return result.toString();
     }
 
     @Override
@@ -113,185 +286,287 @@ public class SimpleAiPlayerHandler implements PlayerHandler{
 
 
     /**
-     * evaluate current game state according to nega max algorithm
-     *
-     * @param depth - current depth level (number of counter moves that still need to be evaluated)
-     * @param indent - debug string, that is placed in front of each log message
-     * @return integer score of game state after looking at "depth" counter moves
+     * search the root to the specified depth in a narrow window around the
+     * score of the last iteration; if the score falls outside, the window is
+     * widened and the root searched again
+     * @return best move, its score is left in rootScore
      */
-    private int negaMax(int depth, String indent) {
-
-        if (depth <= 0
-                || this.chessGame.getGameState() == ChessGame.GAME_STATE_END_WHITE_WON
-                || this.chessGame.getGameState() == ChessGame.GAME_STATE_END_BLACK_WON) {
+    private int searchAspiration(Position position, int depth, int[] moves, int count) {
+        int previousScore = this.rootScore;
+        if (depth < 4 || previousScore >= INFINITY - MATE_BOUND || previousScore <= -INFINITY + MATE_BOUND) {
+            return searchRoot(position, depth, moves, count, -INFINITY, INFINITY);
+        }
 
-            return evaluateState();
+        int delta = ASPIRATION_WINDOW;
+        while (true) {
+            int alpha = (int) Math.max((long) previousScore - delta, -INFINITY);
+            int beta = (int) Math.min((long) previousScore + delta, INFINITY);
+            int move = searchRoot(position, depth, moves, count, alpha, beta);
+            if (this.stopped) return move;
+            if ((this.rootScore > alpha || alpha == -INFINITY) && (this.rootScore < beta || beta == INFINITY)) {
+                return move;
+            }
+            delta = delta >= INFINITY / 4 ? INFINITY : delta * 4;
         }
+    }
 
-        List<Move> moves = generateMoves(false);
-        int currentMax = Integer.MIN_VALUE;
+    /**
+     * search all root moves to the specified depth with principal variation
+     * search: the first move gets the full window, every other move a null
+     * window that only proves it is not better, and a full search only if it
+     * turns out to be better.
+     *
+     * The first move is searched alone, as it is likely the best and gives
+     * the others a narrow window. The other moves are independent of each
+     * other and searched in parallel on the pool, each on its own copy of
+     * the position; the best score found so far is shared between them.
+     * @param moves - legal moves of the root position, the best of the last iteration first
+     * @return best move, its score is left in rootScore and its line in rootLine
+     */
+    private int searchRoot(Position position, int depth, int[] moves, int count, int alpha, int beta) {
+        AtomicInteger sharedAlpha = new AtomicInteger(alpha);
+        List<RootMoveTask> tasks = new ArrayList<RootMoveTask>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new RootMoveTask(position, moves[i], depth, sharedAlpha, beta, i == 0));
+        }
 
-        for (Move currentMove : moves) {
-            executeMove(currentMove);
-            //ChessConsole.printCurrentGameState(this.chessGame);
-            int score = -1 * negaMax(depth - 1, indent + " ");
-            //System.out.println(indent+"handling move: "+currentMove+" : "+score);
-            undoMove(currentMove);
+        List<RootMoveResult> results = new ArrayList<RootMoveResult>(count);
+        RootMoveResult first = tasks.get(0).call();
+        if (first == null) return PackedMove.NONE; // stopped
+        results.add(first);
+        if (first.score < beta) {
+            List<RootMoveTask> others = tasks.subList(1, count);
+            if (this.pool == null || this.lazySmp) {
+                for (RootMoveTask task : others) {
+                    results.add(task.call());
+                    if (this.stopped || sharedAlpha.get() >= beta) break;
+                }
+            } else {
+                for (Future<RootMoveResult> future : this.pool.invokeAll(others)) {
+                    results.add(getResult(future));
+                }
+            }
+        }
+        if (this.stopped) return PackedMove.NONE;
 
-            if (score > currentMax) {
-                currentMax = score;
+        // the earlier move wins a tie, as when searching one after another
+        RootMoveResult best = null;
+        for (RootMoveResult result : results) {
+            if (result != null && (best == null || result.score > best.score)) {
+                best = result;
             }
         }
-        //System.out.println(indent+"max: "+currentMax);
-        return currentMax;
+        // if every move failed low, the line of the best is not known
+        this.rootLine = best.score > alpha ? best.line : new int[] {best.move};
+        this.rootScore = best.score;
+        return best.move;
     }
 
     /**
-     * undo specified move
+     * in Lazy SMP mode, start parallelism - 1 helper threads on copies of the
+     * position; every other helper starts one ply deeper
+     * @return the running helpers, empty if not in Lazy SMP mode
      */
-    private void undoMove(Move move) {
-        //System.out.println("undoing move");
-        this.chessGame.undoMove(move);
-        //state.changeGameState();
+    private List<Future<?>> startHelpers(Position position, int[] moves, int count) {
+        List<Future<?>> helpers = new ArrayList<Future<?>>();
+        if (this.pool == null || !this.lazySmp) return helpers;
+
+        for (int i = 1; i < this.parallelism; i++) {
+            final Position helperPosition = new Position(position);
+            final int[] helperMoves = Arrays.copyOf(moves, count);
+            final int startDepth = 1 + (i & 1);
+            helpers.add(this.pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Searcher searcher = acquireSearcher();
+                    try {
+                        searcher.searchHelper(helperPosition, helperMoves, helperMoves.length,
+                                startDepth, Math.min(maxDepth, MAX_PLY - 1));
+                    } finally {
+                        releaseSearcher(searcher);
+                    }
+                }
+            }));
+        }
+        return helpers;
     }
 
     /**
-     * Execute specified move. This will also change the game state after the
-     * move has been executed.
+     * stop the helpers once the main thread is done and wait for them
      */
-    private void executeMove(Move move) {
-        //System.out.println("executing move");
-        this.chessGame.movePiece(move);
-        this.chessGame.changeGameState();
+    private void stopHelpers(List<Future<?>> helpers) {
+        this.stopped = true;
+        for (Future<?> helper : helpers) {
+            getResult(helper);
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while searching", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("search thread failed", e.getCause());
+        }
     }
 
     /**
-     * generate all possible/valid moves for the specified game
-     * @return list of all possible/valid moves
+     * search of one root move by the Searcher of the thread running it
      */
-    private List<Move> generateMoves(boolean debug) {
-        List<Piece> pieces = this.chessGame.getPieces();
-        List<Move> validMoves = new ArrayList<Move>();
-
-        int pieceColor = (this.chessGame.getGameState() == ChessGame.GAME_STATE_WHITE ?
-                Piece.COLOR_WHITE :
-                Piece.COLOR_BLACK);
-
-        // iterate over all non-captured pieces
-        for (Piece piece : pieces) {
-            // only look at pieces of current players color
-            if (pieceColor == piece.getColor()) {
-                // start generating move
-                // iterate over all board rows and columns
-                for (int targetRow = Piece.ROW_1; targetRow <= Piece.ROW_8; targetRow++) {
-                    for (int targetColumn = Piece.COLUMN_A; targetColumn <= Piece.COLUMN_H; targetColumn++) {
-                        Move testMove = new Move(piece.getRow(), piece.getColumn(), targetRow, targetColumn);
-                        testMove.isAi = true;
-                        // finish generating move
-
-                        if (debug) System.out.println("testing move: " + testMove);
-
-//                        if (testMove.toString().equals("1E->1G")) {
-//                            System.out.println("stop");
-//                        }
-                        // check if generated move is valid
-                        if (this.chessRule.isValidMove(testMove, false)) {
-                            // valid move
-                            testMove.setIsValid(true);
-                            validMoves.add(testMove);
-                        } else {
-                            // generated move is invalid, so we skip it
-                        }
+    private class RootMoveTask implements Callable<RootMoveResult> {
+        private final Position rootPosition;
+        private final int move;
+        private final int depth;
+        private final AtomicInteger alpha; // best score of the root so far
+        private final int beta;
+        private final boolean fullWindow;
+
+        RootMoveTask(Position rootPosition, int move, int depth, AtomicInteger alpha, int beta, boolean fullWindow) {
+            this.rootPosition = rootPosition;
+            this.move = move;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.fullWindow = fullWindow;
+        }
+
+        /**
+         * @return score and line of the move, null if the search is stopped or
+         *         another move already reached beta
+         */
+        @Override
+        public RootMoveResult call() {
+            int alpha = this.alpha.get();
+            if (stopped || alpha >= beta) return null;
+
+            Searcher searcher = acquireSearcher();
+            int score;
+            int[] line;
+            try {
+                Position position = new Position(rootPosition);
+                position.makeMove(move);
+                if (fullWindow) {
+                    score = -1 * searcher.negaMax(position, depth - 1, 1, -beta, -alpha);
+                } else {
+                    score = -1 * searcher.negaMax(position, depth - 1, 1, -alpha - 1, -alpha);
+                    if (score > alpha && score < beta && !stopped) {
+                        score = -1 * searcher.negaMax(position, depth - 1, 1, -beta, -alpha);
                     }
                 }
+                line = searcher.getPrincipalVariation(1);
+            } finally {
+                releaseSearcher(searcher);
+            }
+            if (stopped) return null;
 
+            int current = this.alpha.get();
+            while (score > current && !this.alpha.compareAndSet(current, score)) {
+                current = this.alpha.get();
             }
+            int[] result = new int[line.length + 1];
+            result[0] = move;
+            System.arraycopy(line, 0, result, 1, line.length);
+            return new RootMoveResult(move, score, result);
+        }
+    }
+
+    private static class RootMoveResult {
+        final int move;
+        final int score;
+        final int[] line; // expected line, starting with move
+
+        RootMoveResult(int move, int score, int[] line) {
+            this.move = move;
+            this.score = score;
+            this.line = line;
         }
-        return validMoves;
     }
 
     /**
-     * evaluate the current game state from the view of the
-     * current player. High numbers indicate a better situation for
-     * the current player.
-     *
-     * @return integer score of current game state
+     * add nodes visited by a Searcher, and stop the search if the budget is used up
      */
-    private int evaluateState() {
-
-        // add up score
-        //
-        int scoreWhite = 0;
-        int scoreBlack = 0;
-        for (Piece piece : this.chessGame.getPieces()) {
-            if (piece.getColor() == Piece.COLOR_BLACK) {
-                scoreBlack +=
-                        getScoreForPieceType(piece.getType());
-                scoreBlack +=
-                        getScoreForPiecePosition(piece.getRow(), piece.getColumn());
-            } else if ( piece.getColor() == Piece.COLOR_WHITE) {
-                scoreWhite +=
-                        getScoreForPieceType(piece.getType());
-                scoreWhite +=
-                        getScoreForPiecePosition(piece.getRow(), piece.getColumn());
-            } else {
-                throw new IllegalStateException(
-                        "unknown piece color found: " + piece.getColor());
-            }
+    void addNodes(int count) {
+        long total = this.reportedNodes.addAndGet(count);
+        if ((this.maxNodes > 0 && total >= this.maxNodes) || System.currentTimeMillis() >= this.deadline) {
+            this.stopped = true;
+        }
+    }
+
+    /**
+     * @return positions visited by all threads in the current search
+     */
+    private long getNodes() {
+        long nodes = 0;
+        for (Searcher searcher : this.searchers) {
+            nodes += searcher.getNodes();
+        }
+        return nodes;
+    }
+
+    /**
+     * @return an idle Searcher, the one released last if there are several,
+     *         so a single thread keeps searching with the same Searcher
+     */
+    private Searcher acquireSearcher() {
+        Searcher searcher = this.idleSearchers.pollFirst();
+        if (searcher == null) {
+            searcher = new Searcher(this, this.transpositionTable);
+            this.searchers.add(searcher);
         }
+        return searcher;
+    }
 
-        // return evaluation result depending on who's turn it is
-        int gameState = this.chessGame.getGameState();
-
-        if (gameState == ChessGame.GAME_STATE_BLACK) {
-            return scoreBlack - scoreWhite;
-        } else if (gameState == ChessGame.GAME_STATE_WHITE) {
-            return scoreWhite - scoreBlack;
-        } else if (gameState == ChessGame.GAME_STATE_END_WHITE_WON
-                || gameState == ChessGame.GAME_STATE_END_BLACK_WON) {
-            return Integer.MIN_VALUE + 1;
-        } else {
-            throw new IllegalStateException("unknown game state: "+gameState);
+    private void releaseSearcher(Searcher searcher) {
+        this.idleSearchers.offerFirst(searcher);
+    }
+
+    /**
+     * shut the pool down between searches, the Searchers of its threads go with it
+     */
+    private void shutdownPool() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+            this.pool = null;
+            this.searchers.clear();
+            this.idleSearchers.clear();
         }
     }
 
     /**
-     * get the evaluation bonus for the specified position
-     * @param row - one of Piece.ROW_..
-     * @param column - one of Piece.COLUMN_..
-     * @return integer score
+     * @return true if the time or node budget of the move is used up
      */
-    private int getScoreForPiecePosition(int row, int column) {
-        byte[][] positionWeight = {
-                {1,1,1,1,1,1,1,1},
-                {2,2,2,2,2,2,2,2},
-                {2,2,3,3,3,3,2,2},
-                {2,2,3,4,4,3,2,2},
-                {2,2,3,4,4,3,2,2},
-                {2,2,3,3,3,3,2,2},
-                {2,2,2,2,2,2,2,2},
-                {1,1,1,1,1,1,1,1}
-                };
-        return positionWeight[row][column];
+    private boolean isOutOfBudget() {
+        return (this.maxNodes > 0 && getNodes() >= this.maxNodes)
+                || System.currentTimeMillis() >= this.deadline;
     }
 
     /**
-     * get the evaluation score for the specified piece type
-     * @param type - one of Piece.TYPE_..
-     * @return integer score
+     * move the specified move to the front, keeping the order of the others
      */
-    private int getScoreForPieceType(int type) {
-        switch (type) {
-            case Piece.TYPE_BISHOP: return 30;
-            case Piece.TYPE_KING: return 99999;
-            case Piece.TYPE_KNIGHT: return 30;
-            case Piece.TYPE_PAWN: return 10;
-            case Piece.TYPE_QUEEN: return 90;
-            case Piece.TYPE_ROOK: return 50;
-            default: throw new IllegalArgumentException("unknown piece type: "+type);
+    private static void moveToFront(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
         }
     }
 
+    /**
+     * evaluate the position from the view of the side to move.
+     * High numbers indicate a better situation for the side to move.
+     *
+     * @param position - position prepared by the evaluator, see {@link TaperedEvaluator#prepare(Position)}
+     * @param pawnHashTable - Pawn structures evaluated before, null to evaluate the Pawns every time
+     * @return integer score of the position in centipawns
+     */
+    int evaluateState(Position position, PawnHashTable pawnHashTable) {
+        return this.evaluator.evaluate(position, pawnHashTable);
+    }
+
     public static void main(String[] args) {
         ChessGame ch = new ChessGame();
         SimpleAiPlayerHandler ai = new SimpleAiPlayerHandler(ch);
@@ -396,7 +671,8 @@ public class SimpleAiPlayerHandler implements PlayerHandler{
         ch.addPiece(Piece.COLOR_WHITE, Piece.TYPE_ROOK, Piece.ROW_1, Piece.COLUMN_H);
         ch.setGameState(ChessGame.GAME_STATE_BLACK);
 //        ChessConsole.printCurrentGameState(ch);
-        System.out.println("score: "+ai.evaluateState());
+        ai.evaluator.prepare(ch.getPosition());
+        System.out.println("score: "+ai.evaluateState(ch.getPosition(), null));
         System.out.println("move: "+ai.getBestMove()); //c4 b4
     }
 }
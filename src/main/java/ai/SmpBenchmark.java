@@ -0,0 +1,99 @@
+package ai;
+
+import logic.ChessGame;
+import logic.Piece;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Measures the time the AI needs to search a few positions to a fixed depth
+ * with 1, 2, 4, ... threads and prints the speedup over one thread.
+ *
+ * arguments: depth (default 7), largest number of threads (default the
+ * available processors), "split" to measure the root move split instead
+ * of Lazy SMP
+ */
+public class SmpBenchmark {
+    // pieces of the positions, rows 8 to 1 in FEN notation; white to move
+    private static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR",
+            "r1bqkbnr/pppp1ppp/2n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R",
+            "rnbqkb1r/1p2pppp/p2p1n2/8/3NP3/2N5/PPP2PPP/R1BQKB1R",
+    };
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        boolean lazySmp = args.length <= 2 || !args[2].equals("split");
+
+        System.out.println((lazySmp ? "Lazy SMP" : "root move split") + ", depth " + depth);
+        // let the JIT compile the search first, or the first run is the slowest
+        for (String pieces : POSITIONS) {
+            timeToDepth(pieces, depth, 1, lazySmp);
+        }
+
+        long singleThreadTime = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long time = 0;
+            for (String pieces : POSITIONS) {
+                time += timeToDepth(pieces, depth, threads, lazySmp);
+            }
+            if (threads == 1) singleThreadTime = time;
+            System.out.printf("threads: %2d, time: %6dms, speedup: %.2f%n",
+                    threads, time, (double) singleThreadTime / time);
+        }
+    }
+
+    /**
+     * @return milliseconds to search the position to depth
+     */
+    private static long timeToDepth(String pieces, int depth, int threads, boolean lazySmp) {
+        ChessGame chessGame = createGame(pieces);
+        SimpleAiPlayerHandler ai = new SimpleAiPlayerHandler(chessGame);
+        ai.maxDepth = depth;
+        ai.moveTimeMillis = 60 * 60 * 1000;
+        ai.parallelism = threads;
+        ai.lazySmp = lazySmp;
+
+        // the search reports every iteration, keep that out of the results
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        try {
+            long startTime = System.currentTimeMillis();
+            ai.getMove();
+            return System.currentTimeMillis() - startTime;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * @param pieces piece placement in FEN notation, castling is allowed where King and Rook have not moved
+     */
+    private static ChessGame createGame(String pieces) {
+        ChessGame chessGame = new ChessGame();
+        chessGame.clearPieces();
+        String[] rows = pieces.split("/");
+        for (int i = 0; i < rows.length; i++) {
+            int row = Piece.ROW_8 - i;
+            int column = Piece.COLUMN_A;
+            for (char c : rows[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    column += c - '0';
+                } else {
+                    int color = Character.isUpperCase(c) ? Piece.COLOR_WHITE : Piece.COLOR_BLACK;
+                    int type = "rnbqkp".indexOf(Character.toLowerCase(c)) + Piece.TYPE_ROOK;
+                    chessGame.addPiece(color, type, row, column++);
+                }
+            }
+        }
+        chessGame.setGameState(ChessGame.GAME_STATE_WHITE);
+        return chessGame;
+    }
+}
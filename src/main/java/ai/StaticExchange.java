@@ -0,0 +1,114 @@
+package ai;
+
+import logic.PackedMove;
+import logic.Piece;
+import logic.Position;
+
+/**
+ * Static exchange evaluation (SEE): the material a capture wins or loses
+ * once both sides have recaptured on its target square with their least
+ * valuable pieces, each side stopping when going on would lose more.
+ *
+ * The sequence is played on attack sets only, no move is made: a capturing
+ * piece is taken out of the occupied squares, which uncovers the Rooks,
+ * Bishops and Queens behind it. Pins and checks are not looked at.
+ *
+ * Keeps a buffer for the exchange, so every search thread needs its own.
+ */
+public class StaticExchange {
+    // exchange values of the piece types, indexed by Piece.TYPE_..
+    private static final int[] VALUES = {0, 500, 325, 325, 975, 10000, 100};
+
+    private static final int[] LEAST_VALUABLE_FIRST = {
+            Piece.TYPE_PAWN, Piece.TYPE_KNIGHT, Piece.TYPE_BISHOP, Piece.TYPE_ROOK, Piece.TYPE_QUEEN, Piece.TYPE_KING
+    };
+
+    // no more pieces than this can capture on one square
+    private static final int MAX_EXCHANGES = 32;
+
+    private final int[] gains = new int[MAX_EXCHANGES];
+
+    /**
+     * @param move - a capture or promotion of the side to move
+     * @return true if the move loses material after the exchange on its target square
+     */
+    public boolean isLosing(Position position, int move) {
+        // taking a piece worth at least the capturing one cannot lose
+        if (PackedMove.isCapture(move) && !PackedMove.isEnPassant(move)
+                && VALUES[position.getTypeAt(PackedMove.getTarget(move))]
+                >= VALUES[position.getTypeAt(PackedMove.getSource(move))]) {
+            return false;
+        }
+        return evaluate(position, move) < 0;
+    }
+
+    /**
+     * @param move - a move of the side to move
+     * @return material the side to move wins with the move and the best exchange
+     *         after it, in centipawns; negative if it loses material
+     */
+    public int evaluate(Position position, int move) {
+        int source = PackedMove.getSource(move);
+        int target = PackedMove.getTarget(move);
+        int[] gains = this.gains;
+
+        long occupied = position.getOccupied() & ~Position.bit(source);
+        int pieceOnTarget = position.getTypeAt(source);
+        if (PackedMove.isEnPassant(move)) {
+            // the captured Pawn stands beside the target square
+            occupied &= ~Position.bit(Position.square(Position.rowOf(source), Position.columnOf(target)));
+            gains[0] = VALUES[Piece.TYPE_PAWN];
+        } else {
+            gains[0] = VALUES[position.getTypeAt(target)];
+        }
+        if (PackedMove.isPromotion(move)) {
+            pieceOnTarget = PackedMove.getPromotionType(move);
+            gains[0] += VALUES[pieceOnTarget] - VALUES[Piece.TYPE_PAWN];
+        }
+
+        long rooks = position.getPieces(Piece.COLOR_WHITE, Piece.TYPE_ROOK)
+                | position.getPieces(Piece.COLOR_BLACK, Piece.TYPE_ROOK)
+                | position.getPieces(Piece.COLOR_WHITE, Piece.TYPE_QUEEN)
+                | position.getPieces(Piece.COLOR_BLACK, Piece.TYPE_QUEEN);
+        long bishops = position.getPieces(Piece.COLOR_WHITE, Piece.TYPE_BISHOP)
+                | position.getPieces(Piece.COLOR_BLACK, Piece.TYPE_BISHOP)
+                | position.getPieces(Piece.COLOR_WHITE, Piece.TYPE_QUEEN)
+                | position.getPieces(Piece.COLOR_BLACK, Piece.TYPE_QUEEN);
+        long attackers = position.attackersTo(target, occupied);
+        int color = 1 - position.getSideToMove();
+        int depth = 0;
+
+        while (depth < MAX_EXCHANGES - 1) {
+            long colorAttackers = attackers & position.getPieces(color);
+            if (colorAttackers == 0) break;
+
+            // capture with the least valuable attacker
+            int type = 0;
+            long attacker = 0L;
+            for (int i = 0; attacker == 0; i++) {
+                type = LEAST_VALUABLE_FIRST[i];
+                attacker = colorAttackers & position.getPieces(color, type);
+            }
+            attacker &= -attacker;
+
+            // a King may only capture if nothing recaptures
+            occupied &= ~attacker;
+            attackers |= (Position.rookAttacks(target, occupied) & rooks)
+                    | (Position.bishopAttacks(target, occupied) & bishops);
+            attackers &= occupied;
+            if (type == Piece.TYPE_KING && (attackers & position.getPieces(1 - color)) != 0) break;
+
+            depth++;
+            gains[depth] = VALUES[pieceOnTarget] - gains[depth - 1];
+            pieceOnTarget = type;
+            color = 1 - color;
+        }
+
+        // each side takes the better of capturing and stopping, from the last capture back
+        while (depth > 0) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+            depth--;
+        }
+        return gains[0];
+    }
+}
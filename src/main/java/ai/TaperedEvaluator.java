@@ -0,0 +1,340 @@
+package ai;
+
+import logic.Piece;
+import logic.Position;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.util.Arrays;
+
+/**
+ * Evaluates a position by piece values, piece-square tables and the Pawn
+ * structure (doubled, isolated and passed Pawns), given once for the
+ * middlegame and once for the endgame. The two scores are mixed by
+ * the game phase: with all pieces on the board it is the middlegame score,
+ * without Knights, Bishops, Rooks and Queens the endgame score.
+ *
+ * The position keeps both scores and the phase up to date with every move
+ * (see {@link Position#setPieceSquareValues(int[])}), so evaluating does not
+ * look at the pieces and does not allocate anything. The Pawn structure is
+ * looked up in a {@link PawnHashTable} and only evaluated if it is missing.
+ *
+ * All weights come from one flat int array, so a tuner can swap them
+ * without changing code:
+ * <pre>
+ *   0 -  6  middlegame value by Piece.TYPE_.. (0 unused)
+ *   7 - 13  endgame value by Piece.TYPE_.. (7 unused)
+ *  14 - 781 for every type from Piece.TYPE_ROOK to Piece.TYPE_PAWN a middlegame
+ *           and an endgame table of 64 bonuses, row 8 first, from the view of white
+ * 782 - 785 penalty for a doubled Pawn (middlegame, endgame), for an isolated Pawn
+ * 786 - 801 bonus for a passed Pawn by its row from its own side, 8 middlegame, 8 endgame
+ * </pre>
+ * Scores are in centipawns.
+ */
+public class TaperedEvaluator {
+    public static final int WEIGHTS_LENGTH = 14 + 12 * 64 + 4 + 16;
+
+    private static final int TABLES_OFFSET = 14;
+    private static final int PAWN_STRUCTURE_OFFSET = TABLES_OFFSET + 12 * 64;
+
+    // columns next to every column
+    private static final long[] ADJACENT_COLUMNS = new long[8];
+    // by color and square: squares in front of a Pawn on its and the adjacent columns,
+    // a Pawn is passed if no opponent Pawn stands on them
+    private static final long[][] PASSED_PAWN_MASKS = new long[2][64];
+    static {
+        for (int column = 0; column < 8; column++) {
+            if (column > 0) ADJACENT_COLUMNS[column] |= Position.COLUMN_A_MASK << (column - 1);
+            if (column < 7) ADJACENT_COLUMNS[column] |= Position.COLUMN_A_MASK << (column + 1);
+        }
+        for (int square = 0; square < 64; square++) {
+            int row = Position.rowOf(square);
+            int column = Position.columnOf(square);
+            long columns = ADJACENT_COLUMNS[column] | (Position.COLUMN_A_MASK << column);
+            long rowsAbove = row == 7 ? 0L : -1L << (8 * (row + 1));
+            long rowsBelow = (1L << (8 * row)) - 1;
+            PASSED_PAWN_MASKS[Piece.COLOR_WHITE][square] = columns & rowsAbove;
+            PASSED_PAWN_MASKS[Piece.COLOR_BLACK][square] = columns & rowsBelow;
+        }
+    }
+
+    public static final int[] DEFAULT_WEIGHTS = {
+            // middlegame values: -, Rook, Knight, Bishop, Queen, King, Pawn
+            0, 500, 320, 330, 900, 0, 100,
+            // endgame values
+            0, 520, 300, 320, 920, 0, 120,
+
+            // Rook, middlegame
+              0,   0,   0,   0,   0,   0,   0,   0,
+              5,  10,  10,  10,  10,  10,  10,   5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+              0,   0,   0,   5,   5,   0,   0,   0,
+            // Rook, endgame
+              5,   5,   5,   5,   5,   5,   5,   5,
+             10,  10,  10,  10,  10,  10,  10,  10,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+            // Knight, middlegame
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            // Knight, endgame
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            // Bishop, middlegame
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            // Bishop, endgame
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   0,  10,  15,  15,  10,   0, -10,
+            -10,   0,  10,  15,  15,  10,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            // Queen, middlegame
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   5,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            // Queen, endgame
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+            -10,   5,  10,  10,  10,  10,   5, -10,
+             -5,   5,  10,  15,  15,  10,   5,  -5,
+             -5,   5,  10,  15,  15,  10,   5,  -5,
+            -10,   5,  10,  10,  10,  10,   5, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            // King, middlegame: stay behind the Pawns
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20,
+            // King, endgame: come to the center
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10,   0,   0, -10, -20, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -30,   0,   0,   0,   0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50,
+            // Pawn, middlegame
+              0,   0,   0,   0,   0,   0,   0,   0,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             10,  10,  20,  30,  30,  20,  10,  10,
+              5,   5,  10,  25,  25,  10,   5,   5,
+              0,   0,   0,  20,  20,   0,   0,   0,
+              5,  -5, -10,   0,   0, -10,  -5,   5,
+              5,  10,  10, -20, -20,  10,  10,   5,
+              0,   0,   0,   0,   0,   0,   0,   0,
+            // Pawn, endgame: the further the better
+              0,   0,   0,   0,   0,   0,   0,   0,
+             80,  80,  80,  80,  80,  80,  80,  80,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             30,  30,  30,  30,  30,  30,  30,  30,
+             15,  15,  15,  15,  15,  15,  15,  15,
+              5,   5,   5,   5,   5,   5,   5,   5,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+
+            // doubled Pawn, isolated Pawn
+            10, 20, 10, 15,
+            // passed Pawn by row, middlegame
+            0, 5, 10, 15, 25, 40, 60, 0,
+            // passed Pawn by row, endgame
+            0, 10, 20, 35, 60, 90, 130, 0,
+    };
+
+    private final int[] pieceValues = new int[7]; // middlegame values, indexed by Piece.TYPE_..
+    private final int[] pieceSquareValues; // the values for Position.setPieceSquareValues()
+
+    // indexed by stage Position.MIDDLEGAME or Position.ENDGAME
+    private final int[] doubledPawnPenalties = new int[2];
+    private final int[] isolatedPawnPenalties = new int[2];
+    private final int[][] passedPawnBonuses = new int[2][8]; // then by row from the own side
+
+    /**
+     * @param weights WEIGHTS_LENGTH weights as described for the class
+     */
+    public TaperedEvaluator(int[] weights) {
+        if (weights.length != WEIGHTS_LENGTH) {
+            throw new IllegalArgumentException("expected " + WEIGHTS_LENGTH + " weights, got " + weights.length);
+        }
+        System.arraycopy(weights, 0, this.pieceValues, 0, this.pieceValues.length);
+
+        this.pieceSquareValues = new int[2 * 16 * 64];
+        for (int stage = Position.MIDDLEGAME; stage <= Position.ENDGAME; stage++) {
+            for (int type = Piece.TYPE_ROOK; type <= Piece.TYPE_PAWN; type++) {
+                int value = weights[7 * stage + type];
+                int table = TABLES_OFFSET + ((type - Piece.TYPE_ROOK) * 2 + stage) * 64;
+                for (int square = 0; square < 64; square++) {
+                    // the tables start with row 8 from the view of white, black sees them mirrored
+                    int whiteIndex = square ^ 56;
+                    int blackIndex = square;
+                    this.pieceSquareValues[(stage << 10) | (Position.pieceCode(Piece.COLOR_WHITE, type) << 6)
+                            | square] = value + weights[table + whiteIndex];
+                    this.pieceSquareValues[(stage << 10) | (Position.pieceCode(Piece.COLOR_BLACK, type) << 6)
+                            | square] = value + weights[table + blackIndex];
+                }
+            }
+            this.doubledPawnPenalties[stage] = weights[PAWN_STRUCTURE_OFFSET + stage];
+            this.isolatedPawnPenalties[stage] = weights[PAWN_STRUCTURE_OFFSET + 2 + stage];
+            System.arraycopy(weights, PAWN_STRUCTURE_OFFSET + 4 + 8 * stage, this.passedPawnBonuses[stage], 0, 8);
+        }
+    }
+
+    /**
+     * let the position keep the scores of this evaluator, once before searching it
+     */
+    public void prepare(Position position) {
+        position.setPieceSquareValues(this.pieceSquareValues);
+    }
+
+    /**
+     * @param position - position prepared with {@link #prepare(Position)}
+     * @return score of the position from the view of the side to move, in centipawns
+     */
+    public int evaluate(Position position) {
+        return evaluate(position, null);
+    }
+
+    /**
+     * @param position - position prepared with {@link #prepare(Position)}
+     * @param pawnHashTable - table of Pawn structures evaluated before, null to evaluate it every time
+     * @return score of the position from the view of the side to move, in centipawns
+     */
+    public int evaluate(Position position, PawnHashTable pawnHashTable) {
+        int middlegame = position.getMiddlegameScore(Piece.COLOR_WHITE)
+                - position.getMiddlegameScore(Piece.COLOR_BLACK);
+        int endgame = position.getEndgameScore(Piece.COLOR_WHITE) - position.getEndgameScore(Piece.COLOR_BLACK);
+
+        long pawnKey = position.getPawnHash();
+        int index = pawnHashTable == null ? -1 : pawnHashTable.probe(pawnKey);
+        if (index >= 0) {
+            middlegame += pawnHashTable.getMiddlegameScore(index);
+            endgame += pawnHashTable.getEndgameScore(index);
+        } else {
+            long whitePawns = position.getPieces(Piece.COLOR_WHITE, Piece.TYPE_PAWN);
+            long blackPawns = position.getPieces(Piece.COLOR_BLACK, Piece.TYPE_PAWN);
+            long passedWhite = getPassedPawns(Piece.COLOR_WHITE, whitePawns, blackPawns);
+            long passedBlack = getPassedPawns(Piece.COLOR_BLACK, blackPawns, whitePawns);
+            int pawnMiddlegame = getPawnScore(Position.MIDDLEGAME, Piece.COLOR_WHITE, whitePawns, passedWhite)
+                    - getPawnScore(Position.MIDDLEGAME, Piece.COLOR_BLACK, blackPawns, passedBlack);
+            int pawnEndgame = getPawnScore(Position.ENDGAME, Piece.COLOR_WHITE, whitePawns, passedWhite)
+                    - getPawnScore(Position.ENDGAME, Piece.COLOR_BLACK, blackPawns, passedBlack);
+            if (pawnHashTable != null) {
+                pawnHashTable.store(pawnKey, pawnMiddlegame, pawnEndgame);
+            }
+            middlegame += pawnMiddlegame;
+            endgame += pawnEndgame;
+        }
+
+        int phase = Math.min(position.getPhase(), Position.MAX_PHASE);
+        int score = (middlegame * phase + endgame * (Position.MAX_PHASE - phase)) / Position.MAX_PHASE;
+        return position.getSideToMove() == Piece.COLOR_WHITE ? score : -score;
+    }
+
+    /**
+     * @return bitboard of the Pawns of the color no opponent Pawn can stop
+     */
+    private static long getPassedPawns(int color, long pawns, long opponentPawns) {
+        long passed = 0L;
+        for (long rest = pawns; rest != 0; rest &= rest - 1) {
+            int square = Long.numberOfTrailingZeros(rest);
+            if ((PASSED_PAWN_MASKS[color][square] & opponentPawns) == 0) passed |= 1L << square;
+        }
+        return passed;
+    }
+
+    /**
+     * @param stage - Position.MIDDLEGAME or Position.ENDGAME
+     * @return bonuses of the passed Pawns minus penalties of the doubled and isolated Pawns of one color
+     */
+    private int getPawnScore(int stage, int color, long pawns, long passedPawns) {
+        int score = 0;
+        for (int column = 0; column < 8; column++) {
+            long columnPawns = pawns & (Position.COLUMN_A_MASK << column);
+            if (columnPawns == 0) continue;
+            int count = Long.bitCount(columnPawns);
+            score -= (count - 1) * this.doubledPawnPenalties[stage];
+            if ((pawns & ADJACENT_COLUMNS[column]) == 0) {
+                score -= count * this.isolatedPawnPenalties[stage];
+            }
+        }
+        for (long rest = passedPawns; rest != 0; rest &= rest - 1) {
+            int row = Position.rowOf(Long.numberOfTrailingZeros(rest));
+            score += this.passedPawnBonuses[stage][color == Piece.COLOR_WHITE ? row : 7 - row];
+        }
+        return score;
+    }
+
+    /**
+     * @param type one of Piece.TYPE_..
+     * @return middlegame value of the piece type
+     */
+    public int getPieceValue(int type) {
+        return this.pieceValues[type];
+    }
+
+    /**
+     * read weights written as integers separated by white space or commas;
+     * everything from // to the end of a line is a comment
+     */
+    public static int[] readWeights(Reader reader) throws IOException {
+        StreamTokenizer tokenizer = new StreamTokenizer(reader);
+        tokenizer.resetSyntax();
+        tokenizer.wordChars('0', '9');
+        tokenizer.wordChars('-', '-');
+        tokenizer.slashSlashComments(true);
+
+        int[] weights = new int[WEIGHTS_LENGTH];
+        int count = 0;
+        while (tokenizer.nextToken() != StreamTokenizer.TT_EOF) {
+            if (tokenizer.ttype != StreamTokenizer.TT_WORD) continue;
+            if (count == weights.length) weights = Arrays.copyOf(weights, 2 * count);
+            try {
+                weights[count++] = Integer.parseInt(tokenizer.sval);
+            } catch (NumberFormatException e) {
+                throw new IOException("not a weight in line " + tokenizer.lineno() + ": " + tokenizer.sval);
+            }
+        }
+        return Arrays.copyOf(weights, count);
+    }
+}
@@ -0,0 +1,133 @@
+package ai;
+
+/**
+ * Remembers search results by the Zobrist key of the position, so a position
+ * reached again by another move order is not searched again.
+ *
+ * The table is preallocated with a power of two number of entries, an entry
+ * is the key and one long holding score, depth, bound, best move and the
+ * search it was stored in. A slot keeps the deeper result, unless it was
+ * stored by an earlier search.
+ *
+ * The table is shared by all searching threads without locks. The key is
+ * stored XORed with the data, so a slot written by two threads at once,
+ * with the key of one and the data of the other, no longer matches either
+ * key and is read as empty. The table keeps no counters, the threads count
+ * their own probes and hits.
+ */
+public class TranspositionTable {
+    public static final int BOUND_EXACT = 1; // score is the value of the position
+    public static final int BOUND_LOWER = 2; // value is at least score (fail high)
+    public static final int BOUND_UPPER = 3; // value is at most score (fail low)
+
+    private static final int BYTES_PER_ENTRY = 16;
+    private static final int FILL_SAMPLE_SIZE = 1000; // entries looked at by getFillRate()
+
+    private final long[] keys; // key ^ entry
+    // score << 32 | age << 28 | depth << 21 | bound << 19 | packed best move
+    private final long[] entries;
+    private final int mask;
+
+    private int age;
+
+    /**
+     * @param sizeMB memory used by the table in megabytes, rounded down to a power of two entries
+     */
+    public TranspositionTable(int sizeMB) {
+        long requested = Math.max(1L, (long) sizeMB * 1024 * 1024 / BYTES_PER_ENTRY);
+        int size = (int) Long.highestOneBit(Math.min(requested, 1L << 30));
+        this.keys = new long[size];
+        this.entries = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * start a new search: entries of earlier searches may be replaced by any result
+     */
+    public void newSearch() {
+        age = (age + 1) & 15;
+    }
+
+    /**
+     * remove all entries
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0L;
+            entries[i] = 0L;
+        }
+    }
+
+    /**
+     * @return the entry stored for the key, 0 if there is none; read it with the get.. methods
+     */
+    public long probe(long key) {
+        int index = (int) key & mask;
+        long entry = entries[index];
+        return entry != 0 && (keys[index] ^ entry) == key ? entry : 0L;
+    }
+
+    /**
+     * store a search result, unless the slot holds a deeper result of the
+     * current search for another position
+     * @param bound one of BOUND_..
+     * @param bestMove packed move, PackedMove.NONE if there is none
+     */
+    public void store(long key, int depth, int bound, int score, int bestMove) {
+        int index = (int) key & mask;
+        long entry = entries[index];
+        if (entry != 0 && (keys[index] ^ entry) != key && getAge(entry) == age && getDepth(entry) > depth) {
+            return;
+        }
+        entry = ((long) score << 32) | ((long) age << 28) | ((long) depth << 21)
+                | ((long) bound << 19) | bestMove;
+        keys[index] = key ^ entry;
+        entries[index] = entry;
+    }
+
+    public static int getScore(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> 21) & 127;
+    }
+
+    /**
+     * @return one of BOUND_..
+     */
+    public static int getBound(long entry) {
+        return (int) (entry >>> 19) & 3;
+    }
+
+    /**
+     * @return packed move, PackedMove.NONE if there is none
+     */
+    public static int getBestMove(long entry) {
+        return (int) entry & ((1 << 19) - 1);
+    }
+
+    private static int getAge(long entry) {
+        return (int) (entry >>> 28) & 15;
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int getSize() {
+        return keys.length;
+    }
+
+    /**
+     * estimated from the first entries, as the slots are picked by the key
+     * @return share of entries stored by the current search
+     */
+    public double getFillRate() {
+        int sampleSize = Math.min(FILL_SAMPLE_SIZE, entries.length);
+        int current = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            if (entries[i] != 0 && getAge(entries[i]) == age) current++;
+        }
+        return (double) current / sampleSize;
+    }
+}
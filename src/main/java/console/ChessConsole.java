@@ -1,6 +1,7 @@
 package console;
 
 import logic.ChessGame;
+import logic.ChessRule;
 import logic.Move;
 import logic.Piece;
 import logic.PlayerHandler;
@@ -221,7 +222,18 @@ public class ChessConsole implements PlayerHandler {
             } else {
                 move = this.convertStringToMove(input);
             }
+
+            if (move != null && !this.chessGame.getChessRule().isValidMove(move, true)) {
+                System.out.println("invalid move, retry");
+                move = null;
+            }
+        }
+
+        // the player chooses the type of a promoted Pawn before the move is executed
+        if (ChessRule.isPawnPromotion(this.chessGame.getPosition(), move)) {
+            move.promotionType = Move.readPromotionType();
         }
+        move.setIsValid(true);
         return move;
     }
 
@@ -37,6 +37,7 @@ public class ChessBoardGUI extends JPanel implements PlayerHandler {
     private List<GUIPiece> guiPieces = new ArrayList<GUIPiece>();
 
     private GUIPiece dragPiece; // currently dragged game piece
+    private List<Move> dragPieceMoves; // legal moves of the dragged piece, highlighted while dragging
 
     private PiecesListener piecesListener;
 
@@ -211,27 +212,14 @@ public class ChessBoardGUI extends JPanel implements PlayerHandler {
 
         // draw valid target locations, if user is dragging a game piece
         if (isUserDraggingPiece()) {
-            ChessRule moveValidator = chessGame.getChessRule();
-            Piece sourcePiece = chessGame.getNonCapturedPieceAtLocation(dragPiece.getPiece().getRow(),
-                    dragPiece.getPiece().getColumn());
-
-            // iterate the complete board to check if target locations are valid
-            for (int column = Piece.COLUMN_A; column <= Piece.COLUMN_H; column++) {
-                for (int row = Piece.ROW_1; row <= Piece.ROW_8; row++) {
-                    Piece targetPiece = chessGame.getNonCapturedPieceAtLocation(row, column);
-
-                    // check if target location is valid
-                    if (moveValidator.isValidPieceMovementRules(null, sourcePiece, targetPiece,
-                            row, column, true, true)) {
-                        int highlightX = convertColumnToX(column);
-                        int highlightY = convertRowToY(row);
-
-                        // draw the highlight
-                        g.setColor(new Color(0, 204, 0, 60));
-                        g.fillRoundRect(highlightX - 2, highlightY - 2,
-                                SQUARE_WIDTH, SQUARE_HEIGHT, 10, 10);
-                    }
-                }
+            for (Move move : dragPieceMoves) {
+                int highlightX = convertColumnToX(move.targetColumn);
+                int highlightY = convertRowToY(move.targetRow);
+
+                // draw the highlight
+                g.setColor(new Color(0, 204, 0, 60));
+                g.fillRoundRect(highlightX - 2, highlightY - 2,
+                        SQUARE_WIDTH, SQUARE_HEIGHT, 10, 10);
             }
         }
 
@@ -304,44 +292,46 @@ public class ChessBoardGUI extends JPanel implements PlayerHandler {
         Move move = new Move(dragPiece.getPiece().getRow(), dragPiece.getPiece().getColumn(),
                 targetRow, targetColumn);
         if (this.chessGame.getChessRule().isValidMove(move, debug)) {
+            // the player chooses the type of a promoted Pawn before the move is executed
+            if (ChessRule.isPawnPromotion(this.chessGame.getPosition(), move)) {
+                move.promotionType = choosePromotionType();
+            }
             move.setIsValid(true); // move.isValid = true
             this.currentMove = move;
-
-            // if Pawn promotion, change Pawn image
-            if (move.pawnPromotion) {
-//                System.out.println("pawn promotion in chessBoardGUI");
-                Piece piece = dragPiece.getPiece();
-//                piece.setRow(move.targetRow);
-//                piece.setColumn(move.targetColumn);
-//                System.out.println(piece.toString());
-                Image img = this.getPieceImage(piece.getColor(), piece.getType());
-                dragPiece.setImage(img);
-//                dragPiece.correctPiecePosition();
-                // if castling, also modify related Rook's guiPiece
-            } else if (move.rookCastlingMove != null) {
-                Move castlingMove = move.rookCastlingMove;
-                Piece piece = chessGame.getNonCapturedPieceAtLocation(
-                        castlingMove.targetRow, castlingMove.targetColumn);
-//                piece.setRow(castlingMove.targetRow);
-//                piece.setColumn(castlingMove.targetColumn);
-                for (GUIPiece guiPiece : this.guiPieces) {
-                    if (guiPiece.getPiece() == piece) {
-                        guiPiece.correctPiecePosition(); // need to correct in order to draw
-//                        dragPiece.getPiece().setRookForCastling(null);
-                        break;
-                    }
-                }
-            }
         } else {
             dragPiece.correctPiecePosition();
         }
     }
 
     /**
-     * @param guiPiece - set the gui piece that the user is current dragging
+     * for Pawn promotion: let the user pick the type in a dialog, the event
+     * thread keeps painting meanwhile
+     * @return one of Piece.TYPE_.., a Queen if the dialog is closed
+     */
+    private int choosePromotionType() {
+        String[] names = {"Queen", "Rook", "Bishop", "Knight"};
+        int[] types = {Piece.TYPE_QUEEN, Piece.TYPE_ROOK, Piece.TYPE_BISHOP, Piece.TYPE_KNIGHT};
+        int choice = JOptionPane.showOptionDialog(this, "pawn promotion to", "Pawn promotion",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, names, names[0]);
+        return choice < 0 ? Piece.TYPE_QUEEN : types[choice];
+    }
+
+    /**
+     * @param guiPiece - set the gui piece that the user is current dragging,
+     *                 its legal moves are generated once for the whole drag
      */
     public void setDragPiece(GUIPiece guiPiece) {
         this.dragPiece = guiPiece;
+        this.dragPieceMoves = null;
+        if (guiPiece == null) return;
+
+        Piece sourcePiece = guiPiece.getPiece();
+        this.dragPieceMoves = new ArrayList<Move>();
+        for (Move move : MoveGenerator.generateLegalMoves(chessGame.getPosition(), sourcePiece.getColor())) {
+            if (move.sourceRow == sourcePiece.getRow() && move.sourceColumn == sourcePiece.getColumn()) {
+                this.dragPieceMoves.add(move);
+            }
+        }
     }
 
     /**
@@ -371,6 +361,19 @@ public class ChessBoardGUI extends JPanel implements PlayerHandler {
             }
             guiPiece.correctPiecePosition();
 
+            // if Pawn promotion, change Pawn image
+            if (move.pawnPromotion) {
+                Piece piece = guiPiece.getPiece();
+                guiPiece.setImage(this.getPieceImage(piece.getColor(), piece.getType()));
+                // if castling, also modify related Rook's guiPiece
+            } else if (move.rookCastlingMove != null) {
+                Move castlingMove = move.rookCastlingMove;
+                GUIPiece rookGuiPiece = getGuiPieceAt(castlingMove.targetRow, castlingMove.targetColumn);
+                if (rookGuiPiece != null) {
+                    rookGuiPiece.correctPiecePosition(); // need to correct in order to draw
+                }
+            }
+
             // remember last move
             this.lastMove = move;
             this.chessGame.addToHistoryMove(lastMove);
@@ -1,9 +1,9 @@
 package logic;
 
-import ai.SimpleAiPlayerHandler;
-
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by Yuchen Wang on 8/13/15.
@@ -17,10 +17,15 @@ public class ChessGame implements Runnable {
     public static final int GAME_STATE_END_WHITE_WON = 3;
     public static final int GAME_STATE_END_DRAW = 4;
 
+    // occurrences of the same position that make a draw
+    private static final int REPETITIONS_FOR_DRAW = 3;
+
     private volatile boolean isRunning = true;
 
     private List<Piece> pieces;
     private List<Piece> capturedPieces;
+    private Piece[] board; // non-captured pieces indexed by Position.square(row, column)
+    private Position position; // bitboards of the non-captured pieces
 
     private ChessRule chessRule;
     private PlayerHandler blackPlayerHandler;
@@ -29,6 +34,10 @@ public class ChessGame implements Runnable {
 
     private boolean isBlackKingInCheck, isWhiteKingInCheck;
     private boolean stalemate, checkmate;
+    private boolean kingCaptured; // set by movePiece(), so the end of the game needs no scan
+    // occurrences of every position of the game by Zobrist key, kept by movePiece() and undoMove()
+    private Map<Long, Integer> positionCounts = new HashMap<Long, Integer>();
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES]; // for looking for a legal move
     private List<Move> historyMoves;
     private List<Piece> threateningPieces; // containing opponent's pieces and King itself
 
@@ -36,6 +45,7 @@ public class ChessGame implements Runnable {
 
     public ChessGame() {
         this.chessRule = new ChessRule(this);
+        this.position = new Position();
         addChessBoard();
         this.historyMoves = new ArrayList<Move>();
         this.threateningPieces = new ArrayList<Piece>();
@@ -72,6 +82,7 @@ public class ChessGame implements Runnable {
 
         // set start player
         this.activePlayerHandler = this.whitePlayerHandler;
+        addPositionCount(this.position.getHash(), 1);
 
         // start game flow
         System.out.println(Thread.currentThread() + " 0.ChessGame: starting game flow");
@@ -111,8 +122,7 @@ public class ChessGame implements Runnable {
 
         this.changeGameState();
 
-        if (this.activePlayerHandler.getClass() != SimpleAiPlayerHandler.class &&
-                !isGameEndState()) {
+        if (!isGameEndState()) {
             // TODO
             setThreateningPieces(chessRule.isKingInCheck());
 
@@ -217,6 +227,7 @@ public class ChessGame implements Runnable {
      */
     private void addChessBoard() {
         pieces = new ArrayList<Piece>();
+        board = new Piece[64];
         /**
          * normal chess board
          */
@@ -286,6 +297,9 @@ public class ChessGame implements Runnable {
         Piece piece = new Piece(color, type, row, column);
         synchronized (lock) {
             this.pieces.add(piece);
+            this.board[Position.square(row, column)] = piece;
+            this.position.putPiece(color, type, Position.square(row, column));
+            this.position.resetCastlingRights();
         }
     }
 
@@ -294,67 +308,116 @@ public class ChessGame implements Runnable {
      * by an opponent piece, that piece is marked as 'captured'. If the move
      * could not be executed successfully, 'false' is returned and the game
      * state does not change.
+     * The move has to be valid, see {@link ChessRule#isLegal(Position, Move, int[])}.
+     * En passant, castling and Pawn promotion are recognized here.
      *
      * @param move to execute
      * @return true, if piece was moved successfully
      */
     public boolean movePiece(Move move) {
+        Piece piece = getNonCapturedPieceAtLocation(move.sourceRow, move.sourceColumn);
+        assert piece != null;
+        int packedMove = PackedMove.fromMove(this.position, move);
+        markSpecialMove(move, packedMove);
+
         //set captured piece in move
         // this information is needed in the undoMove() method.
-        move.capturedPiece = this.getNonCapturedPieceAtLocation(move.targetRow, move.targetColumn);
-
-//        System.out.println(pieces);
-        Piece piece = getNonCapturedPieceAtLocation(move.sourceRow, move.sourceColumn);
+        if (move.enPassant) {
+            // the captured Pawn stands beside the source location
+            move.capturedPiece = this.getNonCapturedPieceAtLocation(move.sourceRow, move.targetColumn);
+        } else {
+            move.capturedPiece = this.getNonCapturedPieceAtLocation(move.targetRow, move.targetColumn);
+        }
 
         //check if the move is capturing an opponent piece
-        assert piece != null;
-        // capture
         if (move.capturedPiece != null) {
             this.pieces.remove(move.capturedPiece);
             this.capturedPieces.add(move.capturedPiece);
             move.capturedPiece.setIsCaptured(true); // for guiPiece
+            this.board[Position.square(move.capturedPiece.getRow(), move.capturedPiece.getColumn())] = null;
         }
+        this.board[Position.square(move.sourceRow, move.sourceColumn)] = null;
 
-        if (move.enPassant) {
-            move.enPassantPosition(piece.getColor() == Piece.COLOR_BLACK ? -1 : 1);
-//            move.targetRow += piece.getColor() == Piece.COLOR_BLACK ? -1 : 1;
-//            piece.setPerformedEnPassant(false);
-        } else if (move.isAi && move.rookCastlingMove != null) {
-            // for Ai
+        // castling: also move the Rook
+        if (move.rookCastlingMove != null) {
             Move castlingMove = move.rookCastlingMove;
-            Piece rookForCastling = getNonCapturedPieceAtLocation(
-                    castlingMove.sourceRow, castlingMove.sourceColumn);
+            int rookSource = Position.square(castlingMove.sourceRow, castlingMove.sourceColumn);
+            Piece rookForCastling = this.board[rookSource];
             rookForCastling.setRow(castlingMove.targetRow);
             rookForCastling.setColumn(castlingMove.targetColumn);
+            this.board[Position.square(castlingMove.targetRow, castlingMove.targetColumn)] = rookForCastling;
+            this.board[rookSource] = null;
+        } else if (move.pawnPromotion) {
+            piece.setType(move.promotionType);
         }
-//        else if (move.pawnPromotion) {
-//            move.pawnPromotion(piece);
-//        }
-
-        // castling is done in ChessRule
-//        else if (piece.isCastling()) {
-//            piece.setCastling(false);
-//        }
 
         piece.setRow(move.targetRow);
         piece.setColumn(move.targetColumn);
+        this.board[Position.square(move.targetRow, move.targetColumn)] = piece;
+
+        // bitboards, castling rights and en passant square
+        this.position.makeMove(packedMove);
+
+        if (move.capturedPiece != null && move.capturedPiece.getType() == Piece.TYPE_KING) {
+            this.kingCaptured = true;
+        }
+        addPositionCount(this.position.getHash(), 1);
 
         return true;
     }
 
+    private void addPositionCount(long hash, int count) {
+        Integer oldCount = this.positionCounts.get(hash);
+        int newCount = (oldCount == null ? 0 : oldCount) + count;
+        if (newCount > 0) this.positionCounts.put(hash, newCount);
+        else this.positionCounts.remove(hash);
+    }
+
+    /**
+     * mark en passant, Pawn two steps, Pawn promotion and castling in the move.
+     * They are read from the position, so validating a move never has to.
+     */
+    private void markSpecialMove(Move move, int packedMove) {
+        move.enPassant = PackedMove.isEnPassant(packedMove);
+        move.pawnTwoSteps = PackedMove.isPawnTwoSteps(packedMove);
+        move.pawnPromotion = PackedMove.isPromotion(packedMove);
+
+        move.rookCastlingMove = null;
+        if (PackedMove.isCastling(packedMove)) {
+            if (move.targetColumn == Piece.COLUMN_G) {
+                move.rookCastlingMove = new Move(move.sourceRow, Piece.COLUMN_H, move.sourceRow, Piece.COLUMN_F);
+            } else {
+                move.rookCastlingMove = new Move(move.sourceRow, Piece.COLUMN_A, move.sourceRow, Piece.COLUMN_D);
+            }
+            move.rookCastlingMove.isAi = move.isAi;
+        }
+    }
+
     /**
      * check if the games end condition is met:
-     * One color has a captured king, stalemate, checkmate
+     * One color has a captured king, stalemate, checkmate, fifty-move rule, threefold repetition.
+     * Everything is kept up to date by the moves, so this takes constant time
      * @return true if the game end condition is met
      */
     private boolean isGameEndConditionReached() {
-        for (Piece piece : capturedPieces) {
-            if (piece.getType() == Piece.TYPE_KING) {
-                return true;
-            }
-        }
+        return this.kingCaptured || isStalemate() || isCheckmate() || isDrawByRule();
+    }
+
+    /**
+     * @return true if the fifty-move rule or threefold repetition make the game a draw
+     */
+    private boolean isDrawByRule() {
+        if (this.position.getHalfmoveClock() >= Position.FIFTY_MOVE_RULE_HALF_MOVES) return true;
+        Integer count = this.positionCounts.get(this.position.getHash());
+        return count != null && count >= REPETITIONS_FOR_DRAW;
+    }
 
-        return isStalemate() || isCheckmate();
+    /**
+     * @return true if the side to move is in check and has no legal move
+     */
+    private boolean isSideToMoveCheckmated() {
+        int color = this.position.getSideToMove();
+        return this.position.isInCheck(color) && !MoveGenerator.hasLegalMoves(this.position, color, this.moveBuffer);
     }
 
     /**
@@ -371,19 +434,16 @@ public class ChessGame implements Runnable {
     }
 
     /**
-     * returns the first piece at the specified location that is not marked
+     * returns the piece at the specified location that is not marked
      * as 'captured'.
      * @param row one of Piece.ROW_..
      * @param column one of Piece.COLUMN_..
-     * @return the first not captured piece at the specified location
+     * @return the not captured piece at the specified location, null if there
+     *         is none or the location is off the board
      */
     public Piece getNonCapturedPieceAtLocation(int row, int column) {
-        for (Piece piece : this.pieces) {
-            if (piece.getRow() == row && piece.getColumn() == column) {
-                return piece;
-            }
-        }
-        return null;
+        if (!Position.isOnBoard(row, column)) return null;
+        return this.board[Position.square(row, column)];
     }
 
     /**
@@ -394,13 +454,8 @@ public class ChessGame implements Runnable {
      * @return  true if there is a non-captured piece at given location
      */
     public boolean hasNonCapturedPieceAtLocation(int color, int row, int column) {
-        for (Piece piece : pieces) {
-            if (piece.getRow() == row && piece.getColumn() == column &&
-                    piece.getColor() == color) {
-                return true;
-            }
-        }
-        return false;
+        return Position.isOnBoard(row, column) &&
+                this.position.isOccupied(color, Position.square(row, column));
     }
 
     /**
@@ -411,12 +466,8 @@ public class ChessGame implements Runnable {
      * @return true, if the location contains a piece
      */
     public boolean hasNonCapturedPieceAtLocation(int row, int column) {
-        for (Piece piece : this.pieces) {
-            if (piece.getRow() == row && piece.getColumn() == column) {
-                return true;
-            }
-        }
-        return false;
+        return Position.isOnBoard(row, column) &&
+                this.position.isOccupied(Position.square(row, column));
     }
 
     /**
@@ -427,28 +478,25 @@ public class ChessGame implements Runnable {
 
         piece.setRow(move.sourceRow);
         piece.setColumn(move.sourceColumn);
+        this.board[Position.square(move.targetRow, move.targetColumn)] = null;
+        this.board[Position.square(move.sourceRow, move.sourceColumn)] = piece;
 
         // capture[All], en passant[Pawn]
         if (move.capturedPiece != null) {
-            move.capturedPiece.setRow(move.targetRow);
-            move.capturedPiece.setColumn(move.targetColumn);
+            // the captured piece still knows its location
             move.capturedPiece.setIsCaptured(false);
             this.capturedPieces.remove(move.capturedPiece);
             this.pieces.add(move.capturedPiece);
-//            piece.setPerformedEnPassant(false);
+            this.board[Position.square(move.capturedPiece.getRow(), move.capturedPiece.getColumn())] =
+                    move.capturedPiece;
         } else if (move.rookCastlingMove != null) { // castling[King]
             Move castlingMove = move.rookCastlingMove;
-//            System.out.println(move.toString());
-//            piece.setCastlingMove(null);
-//            piece.setRookForCastling(null);
-            piece.setHasNotMoved(true);
-            getNonCapturedPieceAtLocation(castlingMove.targetRow, castlingMove.targetColumn).
-                    setHasNotMoved(true);
-
-            undoMove(castlingMove);
-
-        } else if (piece.isLastMovedTwoSteps()) { // first move[Pawn]
-            piece.setLastMovedTwoSteps(false);
+            int rookTarget = Position.square(castlingMove.targetRow, castlingMove.targetColumn);
+            Piece rookForCastling = this.board[rookTarget];
+            rookForCastling.setRow(castlingMove.sourceRow);
+            rookForCastling.setColumn(castlingMove.sourceColumn);
+            this.board[Position.square(castlingMove.sourceRow, castlingMove.sourceColumn)] = rookForCastling;
+            this.board[rookTarget] = null;
         }
 
         // pawn promotion
@@ -456,11 +504,16 @@ public class ChessGame implements Runnable {
             move.undoPromotion(piece);
         }
 
-        if (piece.getColor() == Piece.COLOR_BLACK) {
-            this.gameState = ChessGame.GAME_STATE_BLACK;
-        } else {
-            this.gameState = ChessGame.GAME_STATE_WHITE;
+        if (move.capturedPiece != null && move.capturedPiece.getType() == Piece.TYPE_KING) {
+            this.kingCaptured = false;
         }
+        addPositionCount(this.position.getHash(), -1);
+
+        // bitboards, castling rights and en passant square
+        this.position.unmakeMove();
+
+        this.gameState = this.position.getSideToMove() == Piece.COLOR_BLACK ?
+                ChessGame.GAME_STATE_BLACK : ChessGame.GAME_STATE_WHITE;
     }
 
     /**
@@ -476,6 +529,11 @@ public class ChessGame implements Runnable {
      */
     public void setGameState(int gameState) {
         this.gameState = gameState;
+        if (gameState == GAME_STATE_WHITE) {
+            this.position.setSideToMove(Piece.COLOR_WHITE);
+        } else if (gameState == GAME_STATE_BLACK) {
+            this.position.setSideToMove(Piece.COLOR_BLACK);
+        }
     }
 
     public List<Piece> getThreateningPieces() {
@@ -512,6 +570,20 @@ public class ChessGame implements Runnable {
         return chessRule;
     }
 
+    /**
+     * @return bitboards of the non-captured pieces
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * @return Zobrist key of the current position, updated by movePiece() and undoMove()
+     */
+    public long getPositionHash() {
+        return position.getHash();
+    }
+
     public boolean isBlackKingInCheck() {
         return isBlackKingInCheck;
     }
@@ -537,6 +609,10 @@ public class ChessGame implements Runnable {
 
     public void clearPieces() {
         pieces = new ArrayList<Piece>();
+        board = new Piece[64];
+        position.clear();
+        kingCaptured = false;
+        positionCounts.clear();
     }
 
     /**
@@ -547,7 +623,11 @@ public class ChessGame implements Runnable {
         //
         if (this.isGameEndConditionReached()) {
 //            System.out.println("game end reached");
-            if (isStalemate()) {
+            // a move that mates wins, even if it also completes a draw rule
+            if (isDrawByRule() && !this.kingCaptured && isSideToMoveCheckmated()) {
+                this.checkmate = true;
+            }
+            if (isStalemate() || (isDrawByRule() && !this.checkmate)) {
                 this.gameState = ChessGame.GAME_STATE_END_DRAW;
             } else if (this.gameState == ChessGame.GAME_STATE_BLACK) {
                 this.gameState = ChessGame.GAME_STATE_END_BLACK_WON;
@@ -557,19 +637,12 @@ public class ChessGame implements Runnable {
             return;
         }
 
-        switch (gameState) {
-            case GAME_STATE_BLACK:
-                this.gameState = GAME_STATE_WHITE;
-                break;
-            case GAME_STATE_WHITE:
-                this.gameState = GAME_STATE_BLACK;
-                break;
-            case GAME_STATE_END_WHITE_WON:
-            case GAME_STATE_END_BLACK_WON:
-                // don't change anymore
-                break;
-            default:
-                throw new IllegalStateException("unknown game state:" + this.gameState);
+        // GAME_STATE_WHITE and GAME_STATE_BLACK differ in the lowest bit only,
+        // the end states don't change anymore
+        if (this.gameState <= GAME_STATE_BLACK) {
+            this.gameState ^= 1;
+        } else if (!isGameEndState()) {
+            throw new IllegalStateException("unknown game state:" + this.gameState);
         }
     }
 
@@ -12,14 +12,15 @@ public class Move {
     public int targetRow;
     public int targetColumn;
     private boolean isValid;
-    public boolean isAi; // should promotion to Queen
+    public boolean isAi; // generated by the Ai
 
     public int score;
     public Piece capturedPiece;
 
-    public Move rookCastlingMove; // [King, Rook]: castling; also reset Piece.hasNotMoved
+    public Move rookCastlingMove; // [King, Rook]: castling
 
     public boolean pawnPromotion; // just performed Pawn Promotion
+    public int promotionType = Piece.TYPE_QUEEN; // type of the promoted Pawn, chosen by the player
     public boolean pawnTwoSteps; // Pawn just moved two steps
     public boolean enPassant; // Pawn just performed En Passant
 
@@ -63,29 +64,12 @@ public class Move {
 //    }
 
     /**
-     * move to (x, y), capture -> on drawing: modify move to (x - 1, y)
-     * when undo: release captured piece and return to source position
+     * for Pawn promotion: ask the user on the console which type the Pawn
+     * is promoted to. Only called by the console player handler, never during
+     * validation, as it blocks until a line is read.
+     * @return one of Piece.TYPE_..
      */
-    public void enPassantPosition(int enPassantIncrement) {
-        targetRow += enPassantIncrement;
-    }
-
-    /**
-     * for Pawn promotion
-     */
-    public void pawnPromotion(Piece piece, Piece pieceToCapture) {
-//        System.out.println(Thread.currentThread() + " pawn promotion");
-        pawnPromotion = true;
-
-        if (pieceToCapture != null) {
-            if (pieceToCapture.getType() == Piece.TYPE_KING) return;
-        }
-
-        if (isAi) {
-            piece.setType(Piece.TYPE_QUEEN);
-            return;
-        }
-
+    public static int readPromotionType() {
         String input;
         BufferedReader inputReader = new BufferedReader(new InputStreamReader(System.in));
 
@@ -99,23 +83,18 @@ public class Move {
                 // read user input
                 input = inputReader.readLine();
 
-                // exit, if user types 'exit'
                 if (input.equalsIgnoreCase("queen") ||
                         input.equalsIgnoreCase("q")) {
-                    piece.setType(Piece.TYPE_QUEEN);
-                    return;
+                    return Piece.TYPE_QUEEN;
                 } else if (input.equalsIgnoreCase("bishop") ||
                         input.equalsIgnoreCase("b")) {
-                    piece.setType(Piece.TYPE_BISHOP);
-                    return;
+                    return Piece.TYPE_BISHOP;
                 } else if (input.equalsIgnoreCase("knight") ||
                         input.equalsIgnoreCase("n")) {
-                    piece.setType(Piece.TYPE_KNIGHT);
-                    return;
+                    return Piece.TYPE_KNIGHT;
                 } else if (input.equalsIgnoreCase("rook") ||
                         input.equalsIgnoreCase("r")) {
-                    piece.setType(Piece.TYPE_ROOK);
-                    return;
+                    return Piece.TYPE_ROOK;
                 } else {
                     System.out.println("invalid input, retry");
                 }
@@ -0,0 +1,370 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the moves of one color from the bitboards of a {@link Position}:
+ * knight and King jumps, sliding rays of Rook, Bishop and Queen, pawn pushes,
+ * captures, en passant and castling. Moves are written as packed ints (see
+ * {@link PackedMove}) into a buffer of the caller, so generating them does
+ * not create any objects.
+ *
+ * Pseudo-legal moves obey the movement rules of every piece, but may leave
+ * the own King in check. Legal moves are filtered once per position instead
+ * of once per move: the checking pieces give the squares that capture or
+ * block the check, pinned pieces may only move along the line to their
+ * King, and the King may only go to squares that are not attacked.
+ *
+ * The captures and promotions can be generated apart from the quiet moves,
+ * so a search that cuts off after a capture never generates the rest.
+ */
+public class MoveGenerator {
+    /**
+     * upper bound of the number of moves in any position, size of a move buffer
+     */
+    public static final int MAX_MOVES = 256;
+
+    private static final long ALL_SQUARES = ~0L;
+
+    // which moves to generate
+    private static final int KIND_CAPTURES = 1; // captures, en passant and promotions
+    private static final int KIND_QUIETS = 2; // all other moves
+    private static final int KIND_ALL = KIND_CAPTURES | KIND_QUIETS;
+    private static final int[] PROMOTION_TYPES = {
+            Piece.TYPE_QUEEN, Piece.TYPE_KNIGHT, Piece.TYPE_ROOK, Piece.TYPE_BISHOP};
+
+    /**
+     * write all pseudo-legal moves for the specified color into moves
+     * @param color one of Piece.COLOR_..
+     * @param moves buffer of at least MAX_MOVES packed moves, see {@link PackedMove}
+     * @return number of moves written
+     */
+    public static int generateMoves(Position position, int color, int[] moves) {
+        return generate(position, color, false, KIND_ALL, ALL_SQUARES, MAX_MOVES, moves);
+    }
+
+    /**
+     * write all legal moves for the specified color into moves
+     * @param color one of Piece.COLOR_..
+     * @param moves buffer of at least MAX_MOVES packed moves, see {@link PackedMove}
+     * @return number of moves written
+     */
+    public static int generateLegalMoves(Position position, int color, int[] moves) {
+        return generate(position, color, true, KIND_ALL, ALL_SQUARES, MAX_MOVES, moves);
+    }
+
+    /**
+     * write the legal captures, en passant captures and promotions for the specified color into moves
+     * @param color one of Piece.COLOR_..
+     * @param moves buffer of at least MAX_MOVES packed moves, see {@link PackedMove}
+     * @return number of moves written
+     */
+    public static int generateLegalCaptures(Position position, int color, int[] moves) {
+        return generate(position, color, true, KIND_CAPTURES, ALL_SQUARES, MAX_MOVES, moves);
+    }
+
+    /**
+     * write the legal moves for the specified color that are neither captures nor promotions into moves
+     * @param color one of Piece.COLOR_..
+     * @param moves buffer of at least MAX_MOVES packed moves, see {@link PackedMove}
+     * @return number of moves written
+     */
+    public static int generateLegalQuietMoves(Position position, int color, int[] moves) {
+        return generate(position, color, true, KIND_QUIETS, ALL_SQUARES, MAX_MOVES, moves);
+    }
+
+    /**
+     * checks a move that was legal in another position, e.g. a killer move,
+     * by generating the moves of its piece only
+     * @param moves buffer of at least MAX_MOVES packed moves, overwritten
+     * @return true if the move is legal for the specified color
+     */
+    public static boolean isLegalMove(Position position, int color, int move, int[] moves) {
+        if (move == PackedMove.NONE) return false;
+        int count = generate(position, color, true, KIND_ALL, Position.bit(PackedMove.getSource(move)),
+                MAX_MOVES, moves);
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) return true;
+        }
+        return false;
+    }
+
+    /**
+     * stops after the first piece with a legal move, for checkmate and stalemate detection
+     * @param color one of Piece.COLOR_..
+     * @param moves buffer of at least MAX_MOVES packed moves, overwritten; the
+     *              moves of one piece are written before the generation stops
+     * @return true if the specified color has any legal move
+     */
+    public static boolean hasLegalMoves(Position position, int color, int[] moves) {
+        return generate(position, color, true, KIND_ALL, ALL_SQUARES, 1, moves) > 0;
+    }
+
+    /**
+     * for the player handlers, the search works on packed moves
+     * @param color one of Piece.COLOR_..
+     * @return list of all legal moves for the specified color
+     */
+    public static List<Move> generateLegalMoves(Position position, int color) {
+        int[] packedMoves = new int[MAX_MOVES];
+        int count = generateLegalMoves(position, color, packedMoves);
+        List<Move> moves = new ArrayList<Move>(count);
+        for (int i = 0; i < count; i++) {
+            moves.add(PackedMove.toMove(packedMoves[i]));
+        }
+        return moves;
+    }
+
+    /**
+     * @param kind - KIND_CAPTURES, KIND_QUIETS or KIND_ALL
+     * @param sources - squares of the pieces to generate moves for
+     * @param limit - stop after the piece whose moves reach this number
+     */
+    private static int generate(Position position, int color, boolean legal, int kind, long sources, int limit,
+                                int[] moves) {
+        int count = 0;
+        long occupied = position.getOccupied();
+        long opponents = position.getPieces(1 - color);
+        long targets = 0L;
+        if ((kind & KIND_CAPTURES) != 0) targets |= opponents;
+        if ((kind & KIND_QUIETS) != 0) targets |= ~occupied;
+        int kingSquare = position.getKingSquare(color);
+        boolean king = kingSquare != Position.NO_SQUARE && (sources & Position.bit(kingSquare)) != 0;
+
+        // squares that capture or block the check, pieces pinned to the King
+        long checkMask = ALL_SQUARES;
+        long pinned = 0L;
+        if (legal && kingSquare != Position.NO_SQUARE) {
+            long checkers = position.getCheckers(color);
+            if (checkers != 0) {
+                if ((checkers & (checkers - 1)) != 0) {
+                    // double check, only the King can move
+                    return king ? generateKingMoves(position, color, kingSquare, targets, true, moves, count) : 0;
+                }
+                checkMask = checkers | Position.between(kingSquare, Long.numberOfTrailingZeros(checkers));
+            }
+            pinned = position.getPinnedPieces(color);
+        }
+
+        // the King first, it is the piece most likely to have a move when there are few
+        if (king) {
+            count = generateKingMoves(position, color, kingSquare, targets, legal, moves, count);
+            if (checkMask == ALL_SQUARES && (kind & KIND_QUIETS) != 0) {
+                count = generateCastlingMoves(position, color, kingSquare, moves, count);
+            }
+            if (count >= limit) return count;
+        }
+
+        count = generatePawnMoves(position, color, kingSquare, kind, sources, checkMask, pinned, legal,
+                moves, count);
+        if (count >= limit) return count;
+
+        // a pinned knight can never move
+        long pieces = position.getPieces(color, Piece.TYPE_KNIGHT) & sources & ~pinned;
+        while (pieces != 0 && count < limit) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            count = addMoves(square, Position.knightAttacks(square) & targets & checkMask, opponents,
+                    moves, count);
+        }
+
+        long queens = position.getPieces(color, Piece.TYPE_QUEEN);
+        pieces = (position.getPieces(color, Piece.TYPE_BISHOP) | queens) & sources;
+        while (pieces != 0 && count < limit) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            count = addMoves(square, Position.bishopAttacks(square, occupied) & targets
+                    & checkMask & pinMask(kingSquare, square, pinned), opponents, moves, count);
+        }
+
+        pieces = (position.getPieces(color, Piece.TYPE_ROOK) | queens) & sources;
+        while (pieces != 0 && count < limit) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            count = addMoves(square, Position.rookAttacks(square, occupied) & targets
+                    & checkMask & pinMask(kingSquare, square, pinned), opponents, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * @return squares a piece on the specified square may move to without exposing its King
+     */
+    private static long pinMask(int kingSquare, int square, long pinned) {
+        if ((pinned & Position.bit(square)) == 0) return ALL_SQUARES;
+        return Position.line(kingSquare, square);
+    }
+
+    /**
+     * King steps; for legal moves only to squares the opponent does not attack
+     * once the King has left its square
+     * @param targets - squares the King may step to, free or with an opponent piece
+     */
+    private static int generateKingMoves(Position position, int color, int kingSquare, long targets,
+                                         boolean legal, int[] moves, int count) {
+        targets &= Position.kingAttacks(kingSquare);
+        long opponents = position.getPieces(1 - color);
+        long occupied = position.getOccupied() & ~Position.bit(kingSquare);
+        while (targets != 0) {
+            int square = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (!legal || position.attackersTo(square, 1 - color, occupied) == 0) {
+                moves[count++] = PackedMove.create(kingSquare, square, 0,
+                        (opponents & Position.bit(square)) != 0 ? PackedMove.FLAG_CAPTURE : 0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * pushes by one and two squares, captures and en passant captures;
+     * pushes to the last row are promotions and count as captures
+     */
+    private static int generatePawnMoves(Position position, int color, int kingSquare, int kind, long sources,
+                                         long checkMask, long pinned, boolean legal, int[] moves, int count) {
+        long pawns = position.getPieces(color, Piece.TYPE_PAWN) & sources;
+        long empty = ~position.getOccupied();
+        long opponents = position.getPieces(1 - color);
+
+        long singlePushes, doublePushes;
+        int forward;
+        if (color == Piece.COLOR_WHITE) {
+            singlePushes = (pawns << 8) & empty;
+            doublePushes = ((singlePushes & Position.ROW_3_MASK) << 8) & empty;
+            forward = 8;
+        } else {
+            singlePushes = (pawns >>> 8) & empty;
+            doublePushes = ((singlePushes & Position.ROW_6_MASK) >>> 8) & empty;
+            forward = -8;
+        }
+        singlePushes &= checkMask;
+        doublePushes &= checkMask;
+        long promotionRows = Position.ROW_1_MASK | Position.ROW_8_MASK;
+        if ((kind & KIND_CAPTURES) == 0) singlePushes &= ~promotionRows;
+        if ((kind & KIND_QUIETS) == 0) {
+            singlePushes &= promotionRows;
+            doublePushes = 0L;
+        }
+
+        while (singlePushes != 0) {
+            int square = Long.numberOfTrailingZeros(singlePushes);
+            singlePushes &= singlePushes - 1;
+            count = addPawnMove(square - forward, square, 0, kingSquare, pinned, moves, count);
+        }
+        while (doublePushes != 0) {
+            int square = Long.numberOfTrailingZeros(doublePushes);
+            doublePushes &= doublePushes - 1;
+            count = addPawnMove(square - 2 * forward, square, PackedMove.FLAG_PAWN_TWO_STEPS,
+                    kingSquare, pinned, moves, count);
+        }
+
+        if ((kind & KIND_CAPTURES) == 0) return count;
+        int enPassantSquare = position.getEnPassantSquare();
+        while (pawns != 0) {
+            int square = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long attacks = Position.pawnAttacks(color, square);
+
+            long captures = attacks & opponents & checkMask & pinMask(kingSquare, square, pinned);
+            while (captures != 0) {
+                int target = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                count = addPromotions(square, target, PackedMove.FLAG_CAPTURE, moves, count);
+            }
+
+            if (enPassantSquare != Position.NO_SQUARE && (attacks & Position.bit(enPassantSquare)) != 0) {
+                // the captured Pawn leaves a square that is not the target, so the
+                // masks do not cover it; check the King directly instead
+                int capturedSquare = enPassantSquare - forward;
+                if (!legal || !position.leavesKingInCheck(color, square, enPassantSquare, capturedSquare)) {
+                    moves[count++] = PackedMove.create(square, enPassantSquare, 0,
+                            PackedMove.FLAG_EN_PASSANT | PackedMove.FLAG_CAPTURE);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int addPawnMove(int sourceSquare, int targetSquare, int flags, int kingSquare, long pinned,
+                                   int[] moves, int count) {
+        if ((pinMask(kingSquare, sourceSquare, pinned) & Position.bit(targetSquare)) != 0) {
+            count = addPromotions(sourceSquare, targetSquare, flags, moves, count);
+        }
+        return count;
+    }
+
+    /**
+     * add a Pawn move, once for every promotion type if it reaches the last row
+     */
+    private static int addPromotions(int sourceSquare, int targetSquare, int flags, int[] moves, int count) {
+        if ((Position.bit(targetSquare) & (Position.ROW_1_MASK | Position.ROW_8_MASK)) == 0) {
+            moves[count++] = PackedMove.create(sourceSquare, targetSquare, 0, flags);
+            return count;
+        }
+        for (int type : PROMOTION_TYPES) {
+            moves[count++] = PackedMove.create(sourceSquare, targetSquare, type, flags);
+        }
+        return count;
+    }
+
+    /**
+     * The King may castle if neither King nor Rook have moved, the squares
+     * between them are free and the King does not start on, pass or end on
+     * an attacked square.
+     */
+    private static int generateCastlingMoves(Position position, int color, int kingSquare,
+                                             int[] moves, int count) {
+        int row = color == Piece.COLOR_WHITE ? Piece.ROW_1 : Piece.ROW_8;
+        if (kingSquare != Position.square(row, Piece.COLUMN_E)) return count;
+
+        int kingSide = color == Piece.COLOR_WHITE ?
+                Position.CASTLING_WHITE_KING_SIDE : Position.CASTLING_BLACK_KING_SIDE;
+        int queenSide = color == Piece.COLOR_WHITE ?
+                Position.CASTLING_WHITE_QUEEN_SIDE : Position.CASTLING_BLACK_QUEEN_SIDE;
+        if (!position.hasCastlingRight(kingSide | queenSide)) return count;
+
+        int opponentColor = 1 - color;
+        if (position.isSquareAttacked(kingSquare, opponentColor)) return count;
+
+        if (position.hasCastlingRight(kingSide)
+                && isCastlingPathFree(position, color, row, Piece.COLUMN_H)
+                && !position.isSquareAttacked(Position.square(row, Piece.COLUMN_F), opponentColor)
+                && !position.isSquareAttacked(Position.square(row, Piece.COLUMN_G), opponentColor)) {
+            moves[count++] = PackedMove.create(kingSquare, Position.square(row, Piece.COLUMN_G), 0,
+                    PackedMove.FLAG_CASTLING);
+        }
+        if (position.hasCastlingRight(queenSide)
+                && isCastlingPathFree(position, color, row, Piece.COLUMN_A)
+                && !position.isSquareAttacked(Position.square(row, Piece.COLUMN_D), opponentColor)
+                && !position.isSquareAttacked(Position.square(row, Piece.COLUMN_C), opponentColor)) {
+            moves[count++] = PackedMove.create(kingSquare, Position.square(row, Piece.COLUMN_C), 0,
+                    PackedMove.FLAG_CASTLING);
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the own Rook stands on rookColumn and all squares between it and the King are free
+     */
+    private static boolean isCastlingPathFree(Position position, int color, int row, int rookColumn) {
+        int rookSquare = Position.square(row, rookColumn);
+        if ((position.getPieces(color, Piece.TYPE_ROOK) & Position.bit(rookSquare)) == 0) {
+            return false;
+        }
+        return (Position.between(Position.square(row, Piece.COLUMN_E), rookSquare) & position.getOccupied()) == 0;
+    }
+
+    /**
+     * add one move from sourceSquare to every square of targets
+     */
+    private static int addMoves(int sourceSquare, long targets, long opponents, int[] moves, int count) {
+        while (targets != 0) {
+            int square = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[count++] = PackedMove.create(sourceSquare, square, 0,
+                    (opponents & Position.bit(square)) != 0 ? PackedMove.FLAG_CAPTURE : 0);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,112 @@
+package logic;
+
+/**
+ * A move packed into a single int, so that move lists are plain int arrays
+ * and searching does not create any objects. {@link Move} objects are only
+ * created for the player handlers.
+ *
+ * bits  0-5  source square
+ * bits  6-11 target square
+ * bits 12-14 type the Pawn is promoted to (one of Piece.TYPE_..), 0 if none
+ * bits 15-18 FLAG_..
+ */
+public class PackedMove {
+    public static final int NONE = 0;
+
+    public static final int FLAG_CAPTURE = 1 << 15; // also set for en passant
+    public static final int FLAG_PAWN_TWO_STEPS = 1 << 16;
+    public static final int FLAG_EN_PASSANT = 1 << 17;
+    public static final int FLAG_CASTLING = 1 << 18;
+
+    private static final int SQUARE_MASK = 63;
+    private static final int TYPE_MASK = 7;
+
+    private PackedMove() {
+    }
+
+    /**
+     * @param promotionType one of Piece.TYPE_.., 0 if the move is no Pawn promotion
+     * @param flags FLAG_.. bits
+     */
+    public static int create(int sourceSquare, int targetSquare, int promotionType, int flags) {
+        return sourceSquare | (targetSquare << 6) | (promotionType << 12) | flags;
+    }
+
+    public static int getSource(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int getTarget(int move) {
+        return (move >>> 6) & SQUARE_MASK;
+    }
+
+    /**
+     * @return one of Piece.TYPE_.., 0 if the move is no Pawn promotion
+     */
+    public static int getPromotionType(int move) {
+        return (move >>> 12) & TYPE_MASK;
+    }
+
+    public static boolean isPromotion(int move) {
+        return getPromotionType(move) != 0;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & FLAG_CAPTURE) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & FLAG_EN_PASSANT) != 0;
+    }
+
+    public static boolean isPawnTwoSteps(int move) {
+        return (move & FLAG_PAWN_TWO_STEPS) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (move & FLAG_CASTLING) != 0;
+    }
+
+    /**
+     * packs a move of a player; en passant, castling and promotion are read
+     * from the position the move is played in
+     */
+    public static int fromMove(Position position, Move move) {
+        int sourceSquare = Position.square(move.sourceRow, move.sourceColumn);
+        int targetSquare = Position.square(move.targetRow, move.targetColumn);
+        int type = position.getTypeAt(sourceSquare);
+        int flags = position.isOccupied(targetSquare) ? FLAG_CAPTURE : 0;
+        int promotionType = 0;
+
+        if (type == Piece.TYPE_PAWN) {
+            if (move.sourceColumn != move.targetColumn && targetSquare == position.getEnPassantSquare()) {
+                flags |= FLAG_EN_PASSANT | FLAG_CAPTURE;
+            } else if (Math.abs(move.targetRow - move.sourceRow) == 2) {
+                flags |= FLAG_PAWN_TWO_STEPS;
+            } else if (move.targetRow == Piece.ROW_8 || move.targetRow == Piece.ROW_1) {
+                promotionType = move.promotionType;
+            }
+        } else if (type == Piece.TYPE_KING && Math.abs(move.targetColumn - move.sourceColumn) == 2) {
+            flags |= FLAG_CASTLING;
+        }
+        return create(sourceSquare, targetSquare, promotionType, flags);
+    }
+
+    /**
+     * @return a new Move for the player handlers
+     */
+    public static Move toMove(int move) {
+        int sourceSquare = getSource(move);
+        int targetSquare = getTarget(move);
+        Move result = new Move(Position.rowOf(sourceSquare), Position.columnOf(sourceSquare),
+                Position.rowOf(targetSquare), Position.columnOf(targetSquare));
+        if (isPromotion(move)) {
+            result.promotionType = getPromotionType(move);
+        }
+        return result;
+    }
+
+    public static String toString(int move) {
+        return toMove(move).toString();
+    }
+}
@@ -6,8 +6,6 @@ package logic;
 public class Piece {
     private int color;
     private int type;
-    private boolean hasNotMoved; // King & Rook: first move could choose castling
-    private boolean lastMovedTwoSteps; // Pawn: moved two steps in last turn
 //    private boolean performedEnPassant; // Pawn: just performed performedEnPassant
 //    private boolean hasPromotion; // for Pawn reached last rank
 //    private boolean castling; // King
@@ -55,7 +53,6 @@ public class Piece {
         this.column = column;
         this.type = type;
         this.color = color;
-        this.hasNotMoved = true;
 //        this.lastMovedTwoSteps = false; // for Pawn
 //        this.performedEnPassant = false; // for Pawn
 //        this.hasPromotion = false; // for Pawn
@@ -86,14 +83,6 @@ public class Piece {
         return type;
     }
 
-    public boolean hasNotMoved() {
-        return hasNotMoved;
-    }
-
-    public boolean isLastMovedTwoSteps() {
-        return lastMovedTwoSteps;
-    }
-
 //    public boolean hasPromotion() {
 //        return hasPromotion;
 //    }
@@ -210,14 +199,6 @@ public class Piece {
 //        this.rookForCastling = rookForCastling;
 //    }
 
-    public void setHasNotMoved(boolean hasNotMoved) {
-        this.hasNotMoved = hasNotMoved;
-    }
-
-    public void setLastMovedTwoSteps(boolean lastMovedTwoSteps) {
-        this.lastMovedTwoSteps = lastMovedTwoSteps;
-    }
-
     public void setType(int type) {
         this.type = type;
     }
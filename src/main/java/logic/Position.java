@@ -0,0 +1,1083 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Bitboard representation of the pieces on the board. There is one 64 bit
+ * board per color and piece type, plus one occupancy board per color, so
+ * occupancy and attack questions are answered with a few bit operations
+ * instead of scanning the piece list.
+ *
+ * Squares are numbered square = row * 8 + column, so bit 0 is A1, bit 7 is H1
+ * and bit 63 is H8 (see {@link Piece} for rows and columns).
+ *
+ * Next to the bitboards every square holds the code color * 8 + type of its
+ * piece, so the piece on a square is found without searching the boards.
+ *
+ * Every move played with {@link #makeMove(int)} pushes one record onto an
+ * undo stack: the move and its irreversible state (captured piece code,
+ * castling rights, en passant square, halfmove clock and hash), so
+ * {@link #unmakeMove()} restores the position without searching anything.
+ *
+ * The Zobrist key of the position (pieces, side to move, castling rights
+ * and en passant column) is updated with every change instead of being
+ * computed from scratch, as is a second key of the Pawns only.
+ *
+ * Likewise the middlegame and endgame score of each color and the game
+ * phase are updated whenever a piece is put or removed, so an evaluation
+ * reads them without looking at the pieces. The scores are sums over a
+ * table of values per piece and square set by the evaluation, see
+ * {@link #setPieceSquareValues(int[])}.
+ */
+public class Position {
+    public static final int NO_SQUARE = -1;
+    public static final int EMPTY = 0; // piece code of an empty square, no type is 0
+    // half moves without capture or Pawn move that make a draw
+    public static final int FIFTY_MOVE_RULE_HALF_MOVES = 100;
+
+    public static final long ROW_1_MASK = 0x00000000000000FFL;
+    public static final long ROW_8_MASK = 0xFF00000000000000L;
+    public static final long COLUMN_A_MASK = 0x0101010101010101L;
+    public static final long COLUMN_H_MASK = 0x8080808080808080L;
+    public static final long ROW_3_MASK = 0x0000000000FF0000L;
+    public static final long ROW_6_MASK = 0x0000FF0000000000L;
+
+    public static final int CASTLING_WHITE_KING_SIDE = 1;
+    public static final int CASTLING_WHITE_QUEEN_SIDE = 2;
+    public static final int CASTLING_BLACK_KING_SIDE = 4;
+    public static final int CASTLING_BLACK_QUEEN_SIDE = 8;
+
+    // castling rights that survive a move from or to a square
+    private static final int[] CASTLING_RIGHTS_KEPT = new int[64];
+    static {
+        for (int square = 0; square < 64; square++) {
+            CASTLING_RIGHTS_KEPT[square] = 15;
+        }
+        CASTLING_RIGHTS_KEPT[square(Piece.ROW_1, Piece.COLUMN_E)] &=
+                ~(CASTLING_WHITE_KING_SIDE | CASTLING_WHITE_QUEEN_SIDE);
+        CASTLING_RIGHTS_KEPT[square(Piece.ROW_1, Piece.COLUMN_H)] &= ~CASTLING_WHITE_KING_SIDE;
+        CASTLING_RIGHTS_KEPT[square(Piece.ROW_1, Piece.COLUMN_A)] &= ~CASTLING_WHITE_QUEEN_SIDE;
+        CASTLING_RIGHTS_KEPT[square(Piece.ROW_8, Piece.COLUMN_E)] &=
+                ~(CASTLING_BLACK_KING_SIDE | CASTLING_BLACK_QUEEN_SIDE);
+        CASTLING_RIGHTS_KEPT[square(Piece.ROW_8, Piece.COLUMN_H)] &= ~CASTLING_BLACK_KING_SIDE;
+        CASTLING_RIGHTS_KEPT[square(Piece.ROW_8, Piece.COLUMN_A)] &= ~CASTLING_BLACK_QUEEN_SIDE;
+    }
+
+    // squares strictly between two squares on one row, column or diagonal, indexed by from * 64 + to
+    private static final long[] BETWEEN = new long[64 * 64];
+    // whole row, column or diagonal through two squares, indexed by from * 64 + to
+    private static final long[] LINE = new long[64 * 64];
+    static {
+        int[][] directions = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+        for (int from = 0; from < 64; from++) {
+            for (int[] direction : directions) {
+                long line = bit(from) | ray(from, direction[0], direction[1]) | ray(from, -direction[0], -direction[1]);
+                long between = 0L;
+                int row = rowOf(from) + direction[0];
+                int column = columnOf(from) + direction[1];
+                while (isOnBoard(row, column)) {
+                    int to = square(row, column);
+                    BETWEEN[from * 64 + to] = between;
+                    LINE[from * 64 + to] = line;
+                    between |= bit(to);
+                    row += direction[0];
+                    column += direction[1];
+                }
+            }
+        }
+    }
+
+    // Zobrist keys, the hash of a position is the xor of the keys of everything in it
+    private static final long[] PIECE_KEYS = new long[16 * 64]; // indexed by piece code * 64 + square
+    private static final long[] CASTLING_KEYS = new long[16]; // indexed by castling rights
+    private static final long[] EN_PASSANT_KEYS = new long[8]; // indexed by column of the en passant square
+    private static final long BLACK_TO_MOVE_KEY;
+    static {
+        // fixed seed, so the keys are the same in every run
+        Random random = new Random(0x5DEECE66DL);
+        for (int i = 0; i < PIECE_KEYS.length; i++) {
+            PIECE_KEYS[i] = random.nextLong();
+        }
+        // no castling rights, no key
+        for (int i = 1; i < CASTLING_KEYS.length; i++) {
+            CASTLING_KEYS[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_KEYS.length; i++) {
+            EN_PASSANT_KEYS[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = random.nextLong();
+    }
+
+    // squares attacked by the pieces that do not slide, indexed by square
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[] PAWN_ATTACKS = new long[2 * 64]; // indexed by color * 64 + square
+    static {
+        long notA = ~COLUMN_A_MASK;
+        long notAB = ~(COLUMN_A_MASK | (COLUMN_A_MASK << 1));
+        long notH = ~COLUMN_H_MASK;
+        long notGH = ~(COLUMN_H_MASK | (COLUMN_H_MASK >>> 1));
+        for (int square = 0; square < 64; square++) {
+            long b = bit(square);
+            KNIGHT_ATTACKS[square] = ((b << 17) & notA) | ((b << 15) & notH)
+                    | ((b << 10) & notAB) | ((b << 6) & notGH)
+                    | ((b >>> 17) & notH) | ((b >>> 15) & notA)
+                    | ((b >>> 10) & notGH) | ((b >>> 6) & notAB);
+            long sides = ((b << 1) & notA) | ((b >>> 1) & notH);
+            long row = b | sides;
+            KING_ATTACKS[square] = sides | (row << 8) | (row >>> 8);
+            PAWN_ATTACKS[(Piece.COLOR_WHITE << 6) | square] = ((b << 9) & notA) | ((b << 7) & notH);
+            PAWN_ATTACKS[(Piece.COLOR_BLACK << 6) | square] = ((b >>> 7) & notA) | ((b >>> 9) & notH);
+        }
+    }
+
+    // magic bitboards: the blockers on the squares a Rook or Bishop looks across,
+    // multiplied by the magic number of its square, give the index of its attacks
+    // in a table without collisions. The tables of all squares are in one array.
+    // The magic numbers were found once by a search run apart from the game, trying
+    // random sparse numbers for every square until all blockers with different
+    // attacks got different indices; initSlidingAttacks checks that they still do.
+    private static final long[] ROOK_MAGICS = {
+            0x0080102080004000L, 0x4140200190004003L, 0x0200108200200840L, 0x2480080010000481L,
+            0x0480040048008002L, 0x0200020090211418L, 0x4400081044210082L, 0x0100008056012700L,
+            0x08A0800090204000L, 0x008A4000A0100340L, 0x8010802000100080L, 0x0002004012000822L,
+            0xA105000800041100L, 0x0002000200080410L, 0x0104000842501C49L, 0x150A0005008E0044L,
+            0x0101828000400020L, 0x0011010020400080L, 0x0010008020008018L, 0x0C00808008001000L,
+            0x0000110008010004L, 0x4082008004000280L, 0x0080040010080102L, 0x0080020000910044L,
+            0x4002208180004000L, 0x8000400080200088L, 0x0890080020040020L, 0x0000090100201000L,
+            0x8008080100100500L, 0x4080020080800400L, 0xA004014400A20810L, 0x40A0110200004084L,
+            0x4100400181800020L, 0x0030004000402008L, 0x0C80104101002000L, 0x1A30100081800800L,
+            0x0100800400800802L, 0xC184010040400200L, 0x0219011004000208L, 0x10808002C1800100L,
+            0x2060400020828000L, 0x8010402010004009L, 0x0802004028820010L, 0x8010028008028010L,
+            0x000A0104A0120008L, 0x0100040002008080L, 0x0022000401820008L, 0x2A0000410286000CL,
+            0x4000401080002080L, 0x22510022028C4200L, 0x0000801000200080L, 0x0002002240081200L,
+            0x0040040008008280L, 0x0020800400020080L, 0x0240596810020400L, 0x0304140041008200L,
+            0x0000401200208102L, 0x8004804009205301L, 0x0606400900200011L, 0x0040642101100089L,
+            0x0D42002034881112L, 0x0001000804000201L, 0x0400081000820104L, 0x000000D400810822L,
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x0040244102002100L, 0x0121910400808601L, 0x880408008110001CL, 0x8804041080000010L,
+            0x6002121000004014L, 0x0200822020001850L, 0x0000A08820100001L, 0x8002004044442080L,
+            0x04A8040410020224L, 0x4400212810811040L, 0x051009160C010104L, 0x0010082040502000L,
+            0x3000440308240004L, 0x40802A0110090400L, 0x00E004013C122000L, 0x5000402082082100L,
+            0x0091204004011400L, 0x2002000450020200L, 0x0808000422240210L, 0x001C040804101400L,
+            0x0208809404A00008L, 0x0022000088042210L, 0x0000800518011000L, 0x0015030E00820118L,
+            0x0602A21008481010L, 0x1A100821328A0424L, 0x0088010018840100L, 0xA008080004820042L,
+            0x0A01001101004000L, 0x0810021101010880L, 0x4004010010B8010DL, 0x5D00421210808400L,
+            0x0441282800C01040L, 0x0041084200081000L, 0x2009125001180080L, 0x0000020082180081L,
+            0x0440008208030100L, 0x8020082180410882L, 0x0008820090240083L, 0x4609040110808048L,
+            0x2004442008000516L, 0x2184841168942002L, 0x0000101808086400L, 0x00001040104A0200L,
+            0x0131811122028400L, 0x20400A0041005212L, 0x0204013401040400L, 0x1494240C00408030L,
+            0x028200B004104018L, 0x0402090101110009L, 0x0013008048082001L, 0x0000021042020009L,
+            0x9060041042020000L, 0x0341082128122002L, 0x0411109020A08200L, 0x0802140106021029L,
+            0x0CE2410810900408L, 0x0850682101101008L, 0x0201080100880400L, 0x8000001824840408L,
+            0x0000840012020202L, 0x0A400222129A2200L, 0x0200102088808880L, 0x4440300141010010L,
+    };
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_ATTACKS = new long[102400];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_ATTACKS = new long[5248];
+    static {
+        initSlidingAttacks(true, ROOK_MAGICS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS, ROOK_ATTACKS);
+        initSlidingAttacks(false, BISHOP_MAGICS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS, BISHOP_ATTACKS);
+    }
+
+    /**
+     * stages of the game the piece-square values are given for
+     */
+    public static final int MIDDLEGAME = 0;
+    public static final int ENDGAME = 1;
+
+    /**
+     * game phase with all Knights, Bishops, Rooks and Queens on the board
+     */
+    public static final int MAX_PHASE = 24;
+
+    // share of the piece types in the game phase, indexed by Piece.TYPE_..
+    private static final int[] PHASE_WEIGHTS = {0, 2, 1, 1, 4, 0, 0};
+
+    private static final int PIECE_SQUARE_VALUES_LENGTH = 2 * 16 * 64;
+
+    /**
+     * fill the attacks table of Rooks or Bishops for every square and blockers
+     * @param rook - true for Rooks, false for Bishops
+     */
+    private static void initSlidingAttacks(boolean rook, long[] magics, long[] masks, int[] shifts, int[] offsets,
+                                           long[] attacks) {
+        int offset = 0;
+        for (int square = 0; square < 64; square++) {
+            // the last square of a ray is attacked whether or not it is occupied
+            long edges = ((ROW_1_MASK | ROW_8_MASK) & ~(ROW_1_MASK << (8 * rowOf(square))))
+                    | ((COLUMN_A_MASK | COLUMN_H_MASK) & ~(COLUMN_A_MASK << columnOf(square)));
+            long mask = slowAttacks(rook, square, 0L) & ~edges;
+            int bits = Long.bitCount(mask);
+            masks[square] = mask;
+            shifts[square] = 64 - bits;
+            offsets[square] = offset;
+
+            // every subset of the mask as blockers; a slider always attacks some
+            // square, so an empty entry is 0
+            long occupancy = 0L;
+            do {
+                int index = offset + (int) ((occupancy * magics[square]) >>> (64 - bits));
+                long squareAttacks = slowAttacks(rook, square, occupancy);
+                if (attacks[index] != 0L && attacks[index] != squareAttacks) {
+                    throw new IllegalStateException("magic number of square " + square
+                            + " maps blockers with different attacks to one index");
+                }
+                attacks[index] = squareAttacks;
+                occupancy = (occupancy - mask) & mask;
+            } while (occupancy != 0);
+            offset += 1 << bits;
+        }
+    }
+
+    private static long slowAttacks(boolean rook, int square, long occupied) {
+        if (rook) {
+            return slidingAttacks(square, occupied, 1, 0) | slidingAttacks(square, occupied, -1, 0)
+                    | slidingAttacks(square, occupied, 0, 1) | slidingAttacks(square, occupied, 0, -1);
+        }
+        return slidingAttacks(square, occupied, 1, 1) | slidingAttacks(square, occupied, 1, -1)
+                | slidingAttacks(square, occupied, -1, 1) | slidingAttacks(square, occupied, -1, -1);
+    }
+
+    /**
+     * @return all squares from square (exclusive) to the edge of the board in one direction
+     */
+    private static long ray(int square, int rowIncrement, int columnIncrement) {
+        return slidingAttacks(square, 0L, rowIncrement, columnIncrement);
+    }
+
+    // one board for every color and type, indexed by color * 8 + type
+    private final long[] pieceBitboards = new long[16];
+    // all pieces of one color, indexed by color
+    private final long[] colorBitboards = new long[2];
+    private long occupied;
+    // piece code color * 8 + type of every square, EMPTY if there is no piece
+    private final int[] pieceCodes = new int[64];
+
+    private int castlingRights; // CASTLING_.. bits
+    private int enPassantSquare = NO_SQUARE; // square a pawn can capture en passant on
+    private int sideToMove = Piece.COLOR_WHITE;
+    private int halfmoveClock; // half moves since the last capture or Pawn move
+    private long hash; // Zobrist key
+    private long pawnHash; // Zobrist key of the Pawns only
+    // indexed by stage << 10 | piece code << 6 | square, shared with copies and never changed
+    private int[] pieceSquareValues = new int[PIECE_SQUARE_VALUES_LENGTH];
+    private final int[] middlegameScores = new int[2]; // indexed by color
+    private final int[] endgameScores = new int[2];
+    private int phase; // sum of PHASE_WEIGHTS of all pieces
+    private long checkers; // pieces giving check to the King of the side to move
+
+    // undo stack, one entry per move played with makeMove()
+    private int[] undoMoves = new int[UNDO_STACK_SIZE];
+    // packed irreversible state before each move, see pushUndo()
+    private int[] undoStates = new int[UNDO_STACK_SIZE];
+    private long[] undoHashes = new long[UNDO_STACK_SIZE];
+    private long[] undoCheckers = new long[UNDO_STACK_SIZE];
+    private int undoCount;
+    private static final int UNDO_STACK_SIZE = 256;
+
+    public Position() {
+    }
+
+    /**
+     * copy of the other position, so it can be searched without touching the game
+     */
+    public Position(Position other) {
+        System.arraycopy(other.pieceBitboards, 0, this.pieceBitboards, 0, this.pieceBitboards.length);
+        System.arraycopy(other.colorBitboards, 0, this.colorBitboards, 0, this.colorBitboards.length);
+        System.arraycopy(other.pieceCodes, 0, this.pieceCodes, 0, this.pieceCodes.length);
+        this.occupied = other.occupied;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.sideToMove = other.sideToMove;
+        this.halfmoveClock = other.halfmoveClock;
+        this.hash = other.hash;
+        this.pawnHash = other.pawnHash;
+        this.pieceSquareValues = other.pieceSquareValues;
+        this.middlegameScores[Piece.COLOR_WHITE] = other.middlegameScores[Piece.COLOR_WHITE];
+        this.middlegameScores[Piece.COLOR_BLACK] = other.middlegameScores[Piece.COLOR_BLACK];
+        this.endgameScores[Piece.COLOR_WHITE] = other.endgameScores[Piece.COLOR_WHITE];
+        this.endgameScores[Piece.COLOR_BLACK] = other.endgameScores[Piece.COLOR_BLACK];
+        this.phase = other.phase;
+        this.checkers = other.checkers;
+        this.undoMoves = other.undoMoves.clone();
+        this.undoStates = other.undoStates.clone();
+        this.undoHashes = other.undoHashes.clone();
+        this.undoCheckers = other.undoCheckers.clone();
+        this.undoCount = other.undoCount;
+    }
+
+    /**
+     * @return square index of the specified location
+     */
+    public static int square(int row, int column) {
+        return (row << 3) | column;
+    }
+
+    /**
+     * @return one of Piece.ROW_..
+     */
+    public static int rowOf(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * @return one of Piece.COLUMN_..
+     */
+    public static int columnOf(int square) {
+        return square & 7;
+    }
+
+    /**
+     * @return bitboard with only the specified square set
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * @return true if the location is on the board
+     */
+    public static boolean isOnBoard(int row, int column) {
+        return row >= Piece.ROW_1 && row <= Piece.ROW_8
+                && column >= Piece.COLUMN_A && column <= Piece.COLUMN_H;
+    }
+
+    /**
+     * @return code of a piece as stored for every square
+     */
+    public static int pieceCode(int color, int type) {
+        return (color << 3) | type;
+    }
+
+    /**
+     * put a piece on an empty square
+     */
+    public void putPiece(int color, int type, int square) {
+        addPiece(color, type, square);
+        checkers = computeCheckers();
+    }
+
+    /**
+     * remove whatever piece is standing on the specified square
+     */
+    public void removePiece(int square) {
+        takePiece(square);
+        checkers = computeCheckers();
+    }
+
+    /**
+     * put a piece on an empty square, the checkers are left for the caller
+     */
+    private void addPiece(int color, int type, int square) {
+        long bit = 1L << square;
+        int code = pieceCode(color, type);
+        pieceBitboards[code] |= bit;
+        colorBitboards[color] |= bit;
+        occupied |= bit;
+        pieceCodes[square] = code;
+        hash ^= PIECE_KEYS[(code << 6) | square];
+        if (type == Piece.TYPE_PAWN) pawnHash ^= PIECE_KEYS[(code << 6) | square];
+        middlegameScores[color] += pieceSquareValues[(code << 6) | square];
+        endgameScores[color] += pieceSquareValues[(ENDGAME << 10) | (code << 6) | square];
+        phase += PHASE_WEIGHTS[type];
+    }
+
+    /**
+     * remove whatever piece is standing on the specified square, the checkers are left for the caller
+     */
+    private void takePiece(int square) {
+        int code = pieceCodes[square];
+        if (code == EMPTY) return;
+        long mask = ~(1L << square);
+        pieceBitboards[code] &= mask;
+        colorBitboards[code >>> 3] &= mask;
+        occupied &= mask;
+        pieceCodes[square] = EMPTY;
+        hash ^= PIECE_KEYS[(code << 6) | square];
+        if ((code & 7) == Piece.TYPE_PAWN) pawnHash ^= PIECE_KEYS[(code << 6) | square];
+        middlegameScores[code >>> 3] -= pieceSquareValues[(code << 6) | square];
+        endgameScores[code >>> 3] -= pieceSquareValues[(ENDGAME << 10) | (code << 6) | square];
+        phase -= PHASE_WEIGHTS[code & 7];
+    }
+
+    /**
+     * Play a move on the bitboards and push its undo record, so it can be
+     * taken back with {@link #unmakeMove()}.
+     * @param move packed move, see {@link PackedMove}
+     */
+    public void makeMove(int move) {
+        int sourceSquare = PackedMove.getSource(move);
+        int targetSquare = PackedMove.getTarget(move);
+        int code = pieceCodes[sourceSquare];
+        int color = code >>> 3;
+        int type = code & 7;
+
+        int capturedSquare = targetSquare;
+        if (PackedMove.isEnPassant(move)) {
+            // the captured Pawn stands beside the source square
+            capturedSquare = (sourceSquare & ~7) | (targetSquare & 7);
+        }
+        int captured = pieceCodes[capturedSquare];
+        pushUndo(move, captured);
+
+        takePiece(capturedSquare);
+        takePiece(sourceSquare);
+        if (PackedMove.isPromotion(move)) {
+            type = PackedMove.getPromotionType(move);
+        }
+        addPiece(color, type, targetSquare);
+
+        int rookTarget = NO_SQUARE;
+        if (PackedMove.isCastling(move)) {
+            // the Rook jumps over the King
+            int rookSource = targetSquare > sourceSquare ? sourceSquare + 3 : sourceSquare - 4;
+            rookTarget = (sourceSquare + targetSquare) >>> 1;
+            takePiece(rookSource);
+            addPiece(color, Piece.TYPE_ROOK, rookTarget);
+        }
+        checkers = checkersAfterMove(color, type, sourceSquare, targetSquare, capturedSquare, rookTarget);
+
+        setCastlingRights(castlingRightsAfterMove(sourceSquare, targetSquare));
+        // the square the Pawn passed is kept only if an opponent Pawn can capture
+        // on it, otherwise the same position would get two hashes
+        int enPassantSquare = NO_SQUARE;
+        if (PackedMove.isPawnTwoSteps(move)) {
+            int passedSquare = (sourceSquare + targetSquare) >>> 1;
+            if ((pawnAttacks(color, passedSquare) & pieceBitboards[((1 - color) << 3) | Piece.TYPE_PAWN]) != 0) {
+                enPassantSquare = passedSquare;
+            }
+        }
+        setEnPassantSquare(enPassantSquare);
+        halfmoveClock = captured != EMPTY || (code & 7) == Piece.TYPE_PAWN ? 0 : halfmoveClock + 1;
+        sideToMove = 1 - color;
+        hash ^= BLACK_TO_MOVE_KEY;
+    }
+
+    /**
+     * take back the last move played with {@link #makeMove(int)}
+     */
+    public void unmakeMove() {
+        undoCount--;
+        int move = undoMoves[undoCount];
+        int undoState = undoStates[undoCount];
+        int sourceSquare = PackedMove.getSource(move);
+        int targetSquare = PackedMove.getTarget(move);
+        int code = pieceCodes[targetSquare];
+        int color = code >>> 3;
+
+        takePiece(targetSquare);
+        if (PackedMove.isPromotion(move)) {
+            addPiece(color, Piece.TYPE_PAWN, sourceSquare);
+        } else {
+            addPiece(color, code & 7, sourceSquare);
+        }
+
+        int captured = undoState & 15;
+        if (captured != EMPTY) {
+            int capturedSquare = targetSquare;
+            if (PackedMove.isEnPassant(move)) {
+                capturedSquare = (sourceSquare & ~7) | (targetSquare & 7);
+            }
+            addPiece(captured >>> 3, captured & 7, capturedSquare);
+        }
+
+        if (PackedMove.isCastling(move)) {
+            int rookSource = targetSquare > sourceSquare ? sourceSquare + 3 : sourceSquare - 4;
+            int rookTarget = (sourceSquare + targetSquare) >>> 1;
+            takePiece(rookTarget);
+            addPiece(color, Piece.TYPE_ROOK, rookSource);
+        }
+
+        castlingRights = (undoState >>> 4) & 15;
+        enPassantSquare = ((undoState >>> 8) & 127) - 1;
+        halfmoveClock = undoState >>> 15;
+        sideToMove = color;
+        hash = undoHashes[undoCount];
+        checkers = undoCheckers[undoCount];
+    }
+
+    /**
+     * pass: only the side to move changes, for null move pruning of the
+     * search. Take it back with {@link #unmakeNullMove()}.
+     */
+    public void makeNullMove() {
+        pushUndo(PackedMove.NONE, EMPTY);
+        setEnPassantSquare(NO_SQUARE);
+        halfmoveClock++;
+        sideToMove = 1 - sideToMove;
+        hash ^= BLACK_TO_MOVE_KEY;
+        checkers = computeCheckers();
+    }
+
+    /**
+     * take back the pass played with {@link #makeNullMove()}
+     */
+    public void unmakeNullMove() {
+        undoCount--;
+        int undoState = undoStates[undoCount];
+        enPassantSquare = ((undoState >>> 8) & 127) - 1;
+        halfmoveClock = undoState >>> 15;
+        sideToMove = 1 - sideToMove;
+        hash = undoHashes[undoCount];
+        checkers = undoCheckers[undoCount];
+    }
+
+    /**
+     * push the move, the hash, the checkers and the state the move destroys: bits 0-3 captured piece code,
+     * 4-7 castling rights, 8-14 en passant square + 1, 15 and up halfmove clock
+     */
+    private void pushUndo(int move, int captured) {
+        if (undoCount == undoMoves.length) {
+            undoMoves = Arrays.copyOf(undoMoves, undoCount * 2);
+            undoStates = Arrays.copyOf(undoStates, undoCount * 2);
+            undoHashes = Arrays.copyOf(undoHashes, undoCount * 2);
+            undoCheckers = Arrays.copyOf(undoCheckers, undoCount * 2);
+        }
+        undoMoves[undoCount] = move;
+        undoHashes[undoCount] = hash;
+        undoCheckers[undoCount] = checkers;
+        undoStates[undoCount] = captured | (castlingRights << 4) | ((enPassantSquare + 1) << 8)
+                | (halfmoveClock << 15);
+        undoCount++;
+    }
+
+    /**
+     * @return last move played with makeMove() that is not taken back,
+     *         PackedMove.NONE if there is none or it was a null move
+     */
+    public int getLastMove() {
+        return undoCount == 0 ? PackedMove.NONE : undoMoves[undoCount - 1];
+    }
+
+    /**
+     * @return half moves since the last capture or Pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * looks back through the undo stack to the last capture or Pawn move,
+     * earlier positions cannot come again, or to the last null move, as the
+     * positions before a pass were not really followed by this one
+     * @return true if the position occurred before with the same side to move
+     */
+    public boolean isRepetition() {
+        int oldest = Math.max(undoCount - halfmoveClock, 0);
+        for (int i = undoCount - 1; i >= oldest; i--) {
+            if (undoMoves[i] == PackedMove.NONE) return false;
+            if (((undoCount - i) & 1) == 0 && undoHashes[i] == hash) return true;
+        }
+        return false;
+    }
+
+    /**
+     * remove all pieces
+     */
+    public void clear() {
+        for (int i = 0; i < pieceBitboards.length; i++) {
+            pieceBitboards[i] = 0L;
+        }
+        colorBitboards[Piece.COLOR_WHITE] = 0L;
+        colorBitboards[Piece.COLOR_BLACK] = 0L;
+        occupied = 0L;
+        for (int square = 0; square < 64; square++) {
+            pieceCodes[square] = EMPTY;
+        }
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        undoCount = 0;
+        hash = sideToMove == Piece.COLOR_BLACK ? BLACK_TO_MOVE_KEY : 0L;
+        pawnHash = 0L;
+        middlegameScores[Piece.COLOR_WHITE] = 0;
+        middlegameScores[Piece.COLOR_BLACK] = 0;
+        endgameScores[Piece.COLOR_WHITE] = 0;
+        endgameScores[Piece.COLOR_BLACK] = 0;
+        phase = 0;
+        checkers = 0L;
+    }
+
+    /**
+     * set the values the scores of the colors are summed up from, and sum
+     * them up for the pieces on the board. Copies of the position share the
+     * values, so they must not be changed afterwards.
+     * @param values value of a piece on a square, indexed by stage << 10 | piece code << 6 | square
+     *               with stage MIDDLEGAME or ENDGAME, see {@link #pieceCode(int, int)}
+     */
+    public void setPieceSquareValues(int[] values) {
+        if (values.length != PIECE_SQUARE_VALUES_LENGTH) {
+            throw new IllegalArgumentException("expected " + PIECE_SQUARE_VALUES_LENGTH + " values, got "
+                    + values.length);
+        }
+        pieceSquareValues = values;
+        for (int color = Piece.COLOR_WHITE; color <= Piece.COLOR_BLACK; color++) {
+            middlegameScores[color] = 0;
+            endgameScores[color] = 0;
+        }
+        for (int square = 0; square < 64; square++) {
+            int code = pieceCodes[square];
+            if (code == EMPTY) continue;
+            middlegameScores[code >>> 3] += values[(code << 6) | square];
+            endgameScores[code >>> 3] += values[(ENDGAME << 10) | (code << 6) | square];
+        }
+    }
+
+    /**
+     * @param color one of Piece.COLOR_..
+     * @return sum of the middlegame values of the pieces of the color on their squares
+     */
+    public int getMiddlegameScore(int color) {
+        return middlegameScores[color];
+    }
+
+    /**
+     * @param color one of Piece.COLOR_..
+     * @return sum of the endgame values of the pieces of the color on their squares
+     */
+    public int getEndgameScore(int color) {
+        return endgameScores[color];
+    }
+
+    /**
+     * @return MAX_PHASE with all Knights, Bishops, Rooks and Queens on the board, down to 0
+     *         without any; may exceed MAX_PHASE after promotions
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return one of Piece.COLOR_..
+     */
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int sideToMove) {
+        if (sideToMove != this.sideToMove) hash ^= BLACK_TO_MOVE_KEY;
+        this.sideToMove = sideToMove;
+        this.checkers = computeCheckers();
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        hash ^= CASTLING_KEYS[this.castlingRights] ^ CASTLING_KEYS[castlingRights];
+        this.castlingRights = castlingRights;
+    }
+
+    /**
+     * @return true if the specified CASTLING_.. right is still available
+     */
+    public boolean hasCastlingRight(int castlingRight) {
+        return (castlingRights & castlingRight) != 0;
+    }
+
+    /**
+     * @return castling rights left after a move between the specified squares
+     */
+    public int castlingRightsAfterMove(int sourceSquare, int targetSquare) {
+        return castlingRights & CASTLING_RIGHTS_KEPT[sourceSquare] & CASTLING_RIGHTS_KEPT[targetSquare];
+    }
+
+    /**
+     * grant every castling right whose King and Rook stand on their initial squares,
+     * used while setting up the board
+     */
+    public void resetCastlingRights() {
+        int rights = 0;
+        if (isOnInitialSquare(Piece.COLOR_WHITE, Piece.TYPE_KING, Piece.ROW_1, Piece.COLUMN_E)) {
+            if (isOnInitialSquare(Piece.COLOR_WHITE, Piece.TYPE_ROOK, Piece.ROW_1, Piece.COLUMN_H))
+                rights |= CASTLING_WHITE_KING_SIDE;
+            if (isOnInitialSquare(Piece.COLOR_WHITE, Piece.TYPE_ROOK, Piece.ROW_1, Piece.COLUMN_A))
+                rights |= CASTLING_WHITE_QUEEN_SIDE;
+        }
+        if (isOnInitialSquare(Piece.COLOR_BLACK, Piece.TYPE_KING, Piece.ROW_8, Piece.COLUMN_E)) {
+            if (isOnInitialSquare(Piece.COLOR_BLACK, Piece.TYPE_ROOK, Piece.ROW_8, Piece.COLUMN_H))
+                rights |= CASTLING_BLACK_KING_SIDE;
+            if (isOnInitialSquare(Piece.COLOR_BLACK, Piece.TYPE_ROOK, Piece.ROW_8, Piece.COLUMN_A))
+                rights |= CASTLING_BLACK_QUEEN_SIDE;
+        }
+        setCastlingRights(rights);
+    }
+
+    private boolean isOnInitialSquare(int color, int type, int row, int column) {
+        return (getPieces(color, type) & bit(square(row, column))) != 0;
+    }
+
+    /**
+     * @return square a pawn can move to by capturing en passant, NO_SQUARE if there is none
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        if (this.enPassantSquare != NO_SQUARE) hash ^= EN_PASSANT_KEYS[columnOf(this.enPassantSquare)];
+        if (enPassantSquare != NO_SQUARE) hash ^= EN_PASSANT_KEYS[columnOf(enPassantSquare)];
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    /**
+     * @return Zobrist key of the position, kept up to date with every change
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return Zobrist key of the Pawns of both colors, the same for all positions with the same Pawns
+     */
+    public long getPawnHash() {
+        return pawnHash;
+    }
+
+    /**
+     * @return Zobrist key of the Pawns computed from scratch, to check getPawnHash()
+     */
+    public long computePawnHash() {
+        long key = 0L;
+        for (int square = 0; square < 64; square++) {
+            if ((pieceCodes[square] & 7) == Piece.TYPE_PAWN) key ^= PIECE_KEYS[(pieceCodes[square] << 6) | square];
+        }
+        return key;
+    }
+
+    /**
+     * @return Zobrist key computed from scratch, for checking the incremental key
+     */
+    public long computeHash() {
+        long key = 0L;
+        for (int square = 0; square < 64; square++) {
+            if (pieceCodes[square] != EMPTY) key ^= PIECE_KEYS[(pieceCodes[square] << 6) | square];
+        }
+        key ^= CASTLING_KEYS[castlingRights];
+        if (enPassantSquare != NO_SQUARE) key ^= EN_PASSANT_KEYS[columnOf(enPassantSquare)];
+        if (sideToMove == Piece.COLOR_BLACK) key ^= BLACK_TO_MOVE_KEY;
+        return key;
+    }
+
+    /**
+     * @return bitboard of all pieces with the specified color and type
+     */
+    public long getPieces(int color, int type) {
+        return pieceBitboards[(color << 3) | type];
+    }
+
+    /**
+     * @return bitboard of all pieces with the specified color
+     */
+    public long getPieces(int color) {
+        return colorBitboards[color];
+    }
+
+    /**
+     * @return bitboard of all pieces on the board
+     */
+    public long getOccupied() {
+        return occupied;
+    }
+
+    public boolean isOccupied(int square) {
+        return (occupied & (1L << square)) != 0;
+    }
+
+    public boolean isOccupied(int color, int square) {
+        return (colorBitboards[color] & (1L << square)) != 0;
+    }
+
+    /**
+     * @return piece code color * 8 + type, EMPTY if the square is empty
+     */
+    public int getPieceCodeAt(int square) {
+        return pieceCodes[square];
+    }
+
+    /**
+     * @return one of Piece.COLOR_.., or -1 if the square is empty
+     */
+    public int getColorAt(int square) {
+        int code = pieceCodes[square];
+        return code == EMPTY ? -1 : code >>> 3;
+    }
+
+    /**
+     * @return one of Piece.TYPE_.., or 0 if the square is empty
+     */
+    public int getTypeAt(int square) {
+        return pieceCodes[square] & 7;
+    }
+
+    /**
+     * @return square of the king with the specified color, NO_SQUARE if there is none
+     */
+    public int getKingSquare(int color) {
+        long king = pieceBitboards[(color << 3) | Piece.TYPE_KING];
+        return king == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * @return squares strictly between two squares on one row, column or diagonal,
+     *         0 if they are not aligned
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[(from << 6) | to];
+    }
+
+    /**
+     * @return all squares of the row, column or diagonal through both squares,
+     *         0 if they are not aligned
+     */
+    public static long line(int from, int to) {
+        return LINE[(from << 6) | to];
+    }
+
+    /**
+     * @return squares a knight on the specified square attacks
+     */
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    /**
+     * @return squares a king on the specified square attacks
+     */
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return squares a pawn of the specified color on the specified square attacks
+     */
+    public static long pawnAttacks(int color, int square) {
+        return PAWN_ATTACKS[(color << 6) | square];
+    }
+
+    /**
+     * @param occupied pieces blocking the rays
+     * @return squares a rook on the specified square attacks, the first blocker included
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_ATTACKS[ROOK_OFFSETS[square]
+                + (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    /**
+     * @param occupied pieces blocking the rays
+     * @return squares a bishop on the specified square attacks, the first blocker included
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_ATTACKS[BISHOP_OFFSETS[square]
+                + (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * walk one ray until the edge of the board or the first blocker
+     */
+    private static long slidingAttacks(int square, long occupied, int rowIncrement, int columnIncrement) {
+        long attacks = 0L;
+        int row = rowOf(square) + rowIncrement;
+        int column = columnOf(square) + columnIncrement;
+        while (isOnBoard(row, column)) {
+            long bit = 1L << square(row, column);
+            attacks |= bit;
+            if ((occupied & bit) != 0) break;
+            row += rowIncrement;
+            column += columnIncrement;
+        }
+        return attacks;
+    }
+
+    /**
+     * @param occupied pieces blocking sliding attacks
+     * @return pieces of the specified color attacking the specified square
+     */
+    public long attackersTo(int square, int color, long occupied) {
+        int base = color << 3;
+        long queens = pieceBitboards[base | Piece.TYPE_QUEEN];
+        return (knightAttacks(square) & pieceBitboards[base | Piece.TYPE_KNIGHT])
+                | (kingAttacks(square) & pieceBitboards[base | Piece.TYPE_KING])
+                | (pawnAttacks(1 - color, square) & pieceBitboards[base | Piece.TYPE_PAWN])
+                | (rookAttacks(square, occupied) & (pieceBitboards[base | Piece.TYPE_ROOK] | queens) & occupied)
+                | (bishopAttacks(square, occupied) & (pieceBitboards[base | Piece.TYPE_BISHOP] | queens) & occupied);
+    }
+
+    /**
+     * @param occupied pieces blocking sliding attacks; a piece removed from it
+     *                 uncovers the sliders behind it
+     * @return pieces of both colors attacking the specified square, only those in occupied
+     */
+    public long attackersTo(int square, long occupied) {
+        return (attackersTo(square, Piece.COLOR_WHITE, occupied) | attackersTo(square, Piece.COLOR_BLACK, occupied))
+                & occupied;
+    }
+
+    /**
+     * @return true if a piece of the specified color attacks the specified square
+     */
+    public boolean isSquareAttacked(int square, int color) {
+        return attackersTo(square, color, occupied) != 0;
+    }
+
+    /**
+     * @return opponent pieces giving check to the King of the side to move, kept up to date by every move
+     */
+    public long getCheckers() {
+        return checkers;
+    }
+
+    /**
+     * @return opponent pieces giving check to the King of the specified color
+     */
+    public long getCheckers(int color) {
+        if (color == sideToMove) return checkers;
+        int kingSquare = getKingSquare(color);
+        if (kingSquare == NO_SQUARE) return 0L;
+        return attackersTo(kingSquare, 1 - color, occupied);
+    }
+
+    /**
+     * @return opponent pieces giving check to the King of the side to move, from all pieces
+     */
+    private long computeCheckers() {
+        int kingSquare = getKingSquare(sideToMove);
+        if (kingSquare == NO_SQUARE) return 0L;
+        return attackersTo(kingSquare, 1 - sideToMove, occupied);
+    }
+
+    /**
+     * checkers after a move of color, from the moved piece, the castling Rook
+     * and the lines the move opened to the opponent King
+     * @param type - type of the moved piece on the target square
+     * @param rookTarget - target square of the castling Rook, NO_SQUARE if the move is no castling
+     */
+    private long checkersAfterMove(int color, int type, int sourceSquare, int targetSquare, int capturedSquare,
+                                   int rookTarget) {
+        int kingSquare = getKingSquare(1 - color);
+        if (kingSquare == NO_SQUARE) return 0L;
+        long king = bit(kingSquare);
+
+        long result = 0L;
+        switch (type) {
+            case Piece.TYPE_PAWN: if ((pawnAttacks(color, targetSquare) & king) != 0) result = bit(targetSquare); break;
+            case Piece.TYPE_KNIGHT: if ((knightAttacks(targetSquare) & king) != 0) result = bit(targetSquare); break;
+            // the sliders are found with the discovered checks below
+            default: break;
+        }
+        if (rookTarget != NO_SQUARE && (rookAttacks(rookTarget, occupied) & king) != 0) {
+            result |= bit(rookTarget);
+        }
+
+        // a slider of color checks if it moved or if a square on its line to the King was emptied
+        int base = color << 3;
+        long queens = pieceBitboards[base | Piece.TYPE_QUEEN];
+        if (line(kingSquare, sourceSquare) != 0 || line(kingSquare, targetSquare) != 0
+                || (capturedSquare != targetSquare && line(kingSquare, capturedSquare) != 0)) {
+            result |= (rookAttacks(kingSquare, occupied) & (pieceBitboards[base | Piece.TYPE_ROOK] | queens))
+                    | (bishopAttacks(kingSquare, occupied) & (pieceBitboards[base | Piece.TYPE_BISHOP] | queens));
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the King of the specified color is in check
+     */
+    public boolean isInCheck(int color) {
+        return getCheckers(color) != 0;
+    }
+
+    /**
+     * A piece is pinned if it is the only piece between its King and an
+     * opponent Rook, Bishop or Queen attacking along that line.
+     * @return pieces of the specified color pinned to their King
+     */
+    public long getPinnedPieces(int color) {
+        int kingSquare = getKingSquare(color);
+        if (kingSquare == NO_SQUARE) return 0L;
+
+        int opponentBase = (1 - color) << 3;
+        long queens = pieceBitboards[opponentBase | Piece.TYPE_QUEEN];
+        long snipers = (rookAttacks(kingSquare, 0L) & (pieceBitboards[opponentBase | Piece.TYPE_ROOK] | queens))
+                | (bishopAttacks(kingSquare, 0L) & (pieceBitboards[opponentBase | Piece.TYPE_BISHOP] | queens));
+
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniperSquare = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+
+            long blockers = between(kingSquare, sniperSquare) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                pinned |= blockers & colorBitboards[color];
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * checks if a move would leave the King of the specified color in check
+     * @param capturedSquare square of the captured piece, NO_SQUARE if nothing is captured
+     * @return true if the King is attacked after the move
+     */
+    public boolean leavesKingInCheck(int color, int sourceSquare, int targetSquare, int capturedSquare) {
+        int kingSquare = getKingSquare(color);
+        if (kingSquare == sourceSquare) kingSquare = targetSquare;
+        if (kingSquare == NO_SQUARE) return false;
+
+        long captured = capturedSquare == NO_SQUARE ? 0L : bit(capturedSquare);
+        long occupiedAfterMove = (occupied & ~bit(sourceSquare) & ~captured) | bit(targetSquare);
+        return (attackersTo(kingSquare, 1 - color, occupiedAfterMove) & ~captured) != 0;
+    }
+
+    /**
+     * @param occupied pieces blocking sliding attacks
+     * @return all squares attacked by pieces of the specified color
+     */
+    public long attackedSquares(int color, long occupied) {
+        int base = color << 3;
+        long attacks = 0L;
+
+        long pawns = pieceBitboards[base | Piece.TYPE_PAWN];
+        if (color == Piece.COLOR_WHITE) {
+            attacks |= ((pawns << 9) & ~COLUMN_A_MASK) | ((pawns << 7) & ~COLUMN_H_MASK);
+        } else {
+            attacks |= ((pawns >>> 7) & ~COLUMN_A_MASK) | ((pawns >>> 9) & ~COLUMN_H_MASK);
+        }
+
+        long pieces = pieceBitboards[base | Piece.TYPE_KNIGHT];
+        while (pieces != 0) {
+            attacks |= knightAttacks(Long.numberOfTrailingZeros(pieces));
+            pieces &= pieces - 1;
+        }
+        pieces = pieceBitboards[base | Piece.TYPE_KING];
+        while (pieces != 0) {
+            attacks |= kingAttacks(Long.numberOfTrailingZeros(pieces));
+            pieces &= pieces - 1;
+        }
+        pieces = pieceBitboards[base | Piece.TYPE_ROOK] | pieceBitboards[base | Piece.TYPE_QUEEN];
+        while (pieces != 0) {
+            attacks |= rookAttacks(Long.numberOfTrailingZeros(pieces), occupied);
+            pieces &= pieces - 1;
+        }
+        pieces = pieceBitboards[base | Piece.TYPE_BISHOP] | pieceBitboards[base | Piece.TYPE_QUEEN];
+        while (pieces != 0) {
+            attacks |= bishopAttacks(Long.numberOfTrailingZeros(pieces), occupied);
+            pieces &= pieces - 1;
+        }
+        return attacks;
+    }
+}
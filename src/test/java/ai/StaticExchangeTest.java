@@ -0,0 +1,60 @@
+package ai;
+
+import logic.PackedMove;
+import logic.Position;
+import logic.TestPositions;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StaticExchangeTest {
+    private final StaticExchange staticExchange = new StaticExchange();
+
+    @Test
+    public void undefendedPawn() {
+        assertEquals(100, evaluate("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1", "e1e5"));
+    }
+
+    @Test
+    public void defendedPawnWithXrays() {
+        assertEquals(-225, evaluate("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1", "d3e5"));
+    }
+
+    @Test
+    public void queenTakesDefendedPawn() {
+        String fen = "4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1";
+        assertEquals(-875, evaluate(fen, "d1d5"));
+        Position position = TestPositions.fromFen(fen);
+        assertTrue(staticExchange.isLosing(position, TestPositions.move(position, "d1d5")));
+    }
+
+    @Test
+    public void enPassant() {
+        assertEquals(100, evaluate("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "e5d6"));
+    }
+
+    @Test
+    public void kingTakesUndefendedQueen() {
+        String fen = "4k3/8/8/8/8/8/3q4/3RK3 w - - 0 1";
+        assertEquals(975, evaluate(fen, "e1d2"));
+        Position position = TestPositions.fromFen(fen);
+        assertFalse(staticExchange.isLosing(position, TestPositions.move(position, "e1d2")));
+        assertFalse(staticExchange.isLosing(position, TestPositions.move(position, "d1d2")));
+    }
+
+    @Test
+    public void kingTakesDefendedKnight() {
+        // not a legal move, as the Bishop recaptures the King
+        Position position = TestPositions.fromFen("4k3/8/8/8/8/2b5/3n4/4K3 w - - 0 1");
+        int move = PackedMove.create(TestPositions.square("e1"), TestPositions.square("d2"), 0,
+                PackedMove.FLAG_CAPTURE);
+        assertTrue(staticExchange.isLosing(position, move));
+    }
+
+    private int evaluate(String fen, String move) {
+        Position position = TestPositions.fromFen(fen);
+        return staticExchange.evaluate(position, TestPositions.move(position, move));
+    }
+}
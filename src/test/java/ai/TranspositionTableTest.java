@@ -0,0 +1,65 @@
+package ai;
+
+import logic.PackedMove;
+import logic.Piece;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TranspositionTableTest {
+    private static final long KEY = 0x123456789ABCDEF1L;
+    private static final int MOVE = PackedMove.create(12, 28, 0, PackedMove.FLAG_PAWN_TWO_STEPS);
+
+    private final TranspositionTable table = new TranspositionTable(1);
+
+    @Test
+    public void storedEntryIsFoundAgain() {
+        table.store(KEY, 7, TranspositionTable.BOUND_LOWER, -1234, MOVE);
+        long entry = table.probe(KEY);
+        assertEquals(7, TranspositionTable.getDepth(entry));
+        assertEquals(TranspositionTable.BOUND_LOWER, TranspositionTable.getBound(entry));
+        assertEquals(-1234, TranspositionTable.getScore(entry));
+        assertEquals(MOVE, TranspositionTable.getBestMove(entry));
+    }
+
+    @Test
+    public void mateScoresAndPromotionsFit() {
+        int promotion = PackedMove.create(52, 60, Piece.TYPE_QUEEN, 0);
+        table.store(KEY, 1, TranspositionTable.BOUND_EXACT, SimpleAiPlayerHandler.INFINITY - 3, promotion);
+        long entry = table.probe(KEY);
+        assertEquals(SimpleAiPlayerHandler.INFINITY - 3, TranspositionTable.getScore(entry));
+        assertEquals(promotion, TranspositionTable.getBestMove(entry));
+
+        table.store(KEY, 1, TranspositionTable.BOUND_EXACT, -SimpleAiPlayerHandler.INFINITY + 3, PackedMove.NONE);
+        assertEquals(-SimpleAiPlayerHandler.INFINITY + 3, TranspositionTable.getScore(table.probe(KEY)));
+    }
+
+    @Test
+    public void otherKeyOfTheSlotIsNotFound() {
+        table.store(KEY, 3, TranspositionTable.BOUND_EXACT, 10, MOVE);
+        assertEquals(0L, table.probe(KEY ^ (1L << 40)));
+    }
+
+    @Test
+    public void deeperEntryOfTheSearchIsKept() {
+        long otherKey = KEY + table.getSize(); // same slot
+        table.store(KEY, 8, TranspositionTable.BOUND_EXACT, 10, MOVE);
+        table.store(otherKey, 2, TranspositionTable.BOUND_EXACT, 20, MOVE);
+        assertEquals(10, TranspositionTable.getScore(table.probe(KEY)));
+        assertEquals(0L, table.probe(otherKey));
+
+        // an entry of an earlier search is replaced
+        table.newSearch();
+        table.store(otherKey, 2, TranspositionTable.BOUND_EXACT, 20, MOVE);
+        assertEquals(20, TranspositionTable.getScore(table.probe(otherKey)));
+        assertEquals(0L, table.probe(KEY));
+    }
+
+    @Test
+    public void clearRemovesAllEntries() {
+        table.store(KEY, 3, TranspositionTable.BOUND_UPPER, 10, MOVE);
+        table.clear();
+        assertEquals(0L, table.probe(KEY));
+        assertEquals(0.0, table.getFillRate(), 0.0);
+    }
+}
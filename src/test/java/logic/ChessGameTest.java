@@ -0,0 +1,68 @@
+package logic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChessGameTest {
+
+    @Test
+    public void threefoldRepetitionIsADraw() {
+        ChessGame chessGame = newKnightsGame();
+        for (int i = 0; i < 2; i++) {
+            play(chessGame, "g1f3", "g8f6", "f3g1", "f6g8");
+        }
+        assertEquals(ChessGame.GAME_STATE_WHITE, chessGame.getGameState());
+        // the third time with the white Knight on f3 and black to move
+        play(chessGame, "g1f3");
+        assertEquals(ChessGame.GAME_STATE_END_DRAW, chessGame.getGameState());
+    }
+
+    @Test
+    public void fiftyMovesWithoutCaptureOrPawnMoveAreADraw() {
+        ChessGame chessGame = newKnightsGame();
+        chessGame.getPosition().setHalfmoveClock(Position.FIFTY_MOVE_RULE_HALF_MOVES - 2);
+        play(chessGame, "g1f3");
+        assertEquals(ChessGame.GAME_STATE_BLACK, chessGame.getGameState());
+        play(chessGame, "g8f6");
+        assertEquals(ChessGame.GAME_STATE_END_DRAW, chessGame.getGameState());
+    }
+
+    @Test
+    public void mateOnTheHundredthHalfMoveWins() {
+        ChessGame chessGame = new ChessGame();
+        chessGame.clearPieces();
+        chessGame.addPiece(Piece.COLOR_WHITE, Piece.TYPE_KING, Piece.ROW_6, Piece.COLUMN_G);
+        chessGame.addPiece(Piece.COLOR_WHITE, Piece.TYPE_ROOK, Piece.ROW_1, Piece.COLUMN_A);
+        chessGame.addPiece(Piece.COLOR_BLACK, Piece.TYPE_KING, Piece.ROW_8, Piece.COLUMN_H);
+        chessGame.setGameState(ChessGame.GAME_STATE_WHITE);
+        chessGame.getPosition().setHalfmoveClock(Position.FIFTY_MOVE_RULE_HALF_MOVES - 1);
+        play(chessGame, "a1a8");
+        assertEquals(Position.FIFTY_MOVE_RULE_HALF_MOVES, chessGame.getPosition().getHalfmoveClock());
+        assertEquals(ChessGame.GAME_STATE_END_WHITE_WON, chessGame.getGameState());
+    }
+
+    /**
+     * Kings and Knights on their squares of the start position, white to move
+     */
+    private static ChessGame newKnightsGame() {
+        ChessGame chessGame = new ChessGame();
+        chessGame.clearPieces();
+        chessGame.addPiece(Piece.COLOR_WHITE, Piece.TYPE_KING, Piece.ROW_1, Piece.COLUMN_E);
+        chessGame.addPiece(Piece.COLOR_WHITE, Piece.TYPE_KNIGHT, Piece.ROW_1, Piece.COLUMN_G);
+        chessGame.addPiece(Piece.COLOR_BLACK, Piece.TYPE_KING, Piece.ROW_8, Piece.COLUMN_E);
+        chessGame.addPiece(Piece.COLOR_BLACK, Piece.TYPE_KNIGHT, Piece.ROW_8, Piece.COLUMN_G);
+        chessGame.setGameState(ChessGame.GAME_STATE_WHITE);
+        return chessGame;
+    }
+
+    private static void play(ChessGame chessGame, String... moves) {
+        for (String text : moves) {
+            int source = TestPositions.square(text.substring(0, 2));
+            int target = TestPositions.square(text.substring(2, 4));
+            chessGame.movePiece(new Move(Position.rowOf(source), Position.columnOf(source),
+                    Position.rowOf(target), Position.columnOf(target)));
+            chessGame.changeGameState();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package logic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * counts the leaves of the legal move tree (perft) of well known positions,
+ * every rule of the move generator shows up in one of them
+ */
+public class MoveGeneratorTest {
+
+    @Test
+    public void startPosition() {
+        assertEquals(197281, perft(TestPositions.fromFen(TestPositions.START), 4));
+    }
+
+    @Test
+    public void castlingPinsAndPromotions() {
+        assertEquals(97862, perft(TestPositions.fromFen(TestPositions.KIWIPETE), 3));
+    }
+
+    @Test
+    public void enPassantAndDiscoveredChecks() {
+        assertEquals(674624, perft(TestPositions.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"), 5));
+    }
+
+    @Test
+    public void promotionsWithCheck() {
+        assertEquals(422333, perft(TestPositions.fromFen(
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"), 4));
+    }
+
+    @Test
+    public void castlingThroughAttackedSquares() {
+        assertEquals(62379, perft(TestPositions.fromFen(
+                "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"), 3));
+    }
+
+    @Test
+    public void capturesAndQuietMovesMakeAllMoves() {
+        Position position = TestPositions.fromFen(TestPositions.KIWIPETE);
+        int color = position.getSideToMove();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int captures = MoveGenerator.generateLegalCaptures(position, color, moves);
+        int quiets = MoveGenerator.generateLegalQuietMoves(position, color, moves);
+        assertEquals(MoveGenerator.generateLegalMoves(position, color, moves), captures + quiets);
+    }
+
+    /**
+     * also checks that unmaking every move gives back the same hash
+     * @return number of legal move sequences of the specified length
+     */
+    private static long perft(Position position, int depth) {
+        if (depth == 0) return 1;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(position, position.getSideToMove(), moves);
+        if (depth == 1) return count;
+
+        long hash = position.getHash();
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            leaves += perft(position, depth - 1);
+            position.unmakeMove();
+            assertEquals(hash, position.getHash());
+        }
+        return leaves;
+    }
+}
@@ -0,0 +1,74 @@
+package logic;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PositionTest {
+
+    @Test
+    public void knightsBackAndForthRepeat() {
+        Position position = TestPositions.fromFen(TestPositions.START);
+        long hash = position.getHash();
+        play(position, "g1f3", "g8f6", "f3g1");
+        assertFalse(position.isRepetition());
+        play(position, "f6g8");
+        assertTrue(position.isRepetition());
+        assertEquals(hash, position.getHash());
+    }
+
+    @Test
+    public void repetitionsStartAgainAfterAPawnMove() {
+        Position position = TestPositions.fromFen("4k3/8/8/8/8/8/4P3/4K1N1 w - - 0 1");
+        play(position, "g1f3", "e8d8", "f3g1", "d8e8");
+        assertTrue(position.isRepetition());
+        play(position, "e2e3", "e8d8", "g1f3", "d8e8");
+        assertFalse(position.isRepetition());
+        play(position, "f3g1", "e8d8", "g1f3", "d8e8");
+        assertTrue(position.isRepetition());
+    }
+
+    @Test
+    public void noRepetitionAcrossANullMove() {
+        Position position = TestPositions.fromFen(TestPositions.START);
+        play(position, "g1f3", "g8f6", "f3g1");
+        position.makeNullMove();
+        play(position, "g1f3");
+        position.makeNullMove();
+        play(position, "f3g1", "f6g8");
+        // the start position again, but only by passing twice
+        assertFalse(position.isRepetition());
+        play(position, "g1f3", "g8f6", "f3g1", "f6g8");
+        assertTrue(position.isRepetition());
+    }
+
+    @Test
+    public void halfmoveClockCountsToTheLastCaptureOrPawnMove() {
+        Position position = TestPositions.fromFen("4k3/8/8/8/8/8/4P3/4K1N1 w - - 97 60");
+        play(position, "g1f3");
+        assertEquals(98, position.getHalfmoveClock());
+        play(position, "e8d8", "e2e3");
+        assertEquals(0, position.getHalfmoveClock());
+        position.unmakeMove();
+        assertEquals(99, position.getHalfmoveClock());
+    }
+
+    @Test
+    public void enPassantSquareOnlyWhenItCanBeCaptured() {
+        Position position = TestPositions.fromFen(TestPositions.START);
+        play(position, "e2e4");
+        assertEquals(Position.NO_SQUARE, position.getEnPassantSquare());
+
+        position = TestPositions.fromFen("4k3/8/8/8/3p4/8/4P3/4K3 w - - 0 1");
+        play(position, "e2e4");
+        assertEquals(TestPositions.square("e3"), position.getEnPassantSquare());
+    }
+
+    private static void play(Position position, String... moves) {
+        for (String move : moves) {
+            position.makeMove(TestPositions.move(position, move));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package logic;
+
+/**
+ * positions for the tests, given in Forsyth-Edwards Notation
+ */
+public class TestPositions {
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    public static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private static final String PIECE_LETTERS = "rnbqkp"; // by Piece.TYPE_.. - 1
+
+    /**
+     * @param fen pieces, side to move, castling rights, en passant square and
+     *            optionally the halfmove clock, separated by blanks
+     * @return new position, the undo stack is empty
+     */
+    public static Position fromFen(String fen) {
+        String[] fields = fen.split(" ");
+        Position position = new Position();
+
+        String[] rows = fields[0].split("/");
+        for (int i = 0; i < rows.length; i++) {
+            int row = Piece.ROW_8 - i;
+            int column = Piece.COLUMN_A;
+            for (char c : rows[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    column += c - '0';
+                } else {
+                    int color = Character.isUpperCase(c) ? Piece.COLOR_WHITE : Piece.COLOR_BLACK;
+                    int type = PIECE_LETTERS.indexOf(Character.toLowerCase(c)) + 1;
+                    position.putPiece(color, type, Position.square(row, column++));
+                }
+            }
+        }
+        position.setSideToMove(fields[1].equals("w") ? Piece.COLOR_WHITE : Piece.COLOR_BLACK);
+
+        int castlingRights = 0;
+        if (fields[2].contains("K")) castlingRights |= Position.CASTLING_WHITE_KING_SIDE;
+        if (fields[2].contains("Q")) castlingRights |= Position.CASTLING_WHITE_QUEEN_SIDE;
+        if (fields[2].contains("k")) castlingRights |= Position.CASTLING_BLACK_KING_SIDE;
+        if (fields[2].contains("q")) castlingRights |= Position.CASTLING_BLACK_QUEEN_SIDE;
+        position.setCastlingRights(castlingRights);
+
+        if (!fields[3].equals("-")) {
+            position.setEnPassantSquare(square(fields[3]));
+        }
+        if (fields.length > 4) {
+            position.setHalfmoveClock(Integer.parseInt(fields[4]));
+        }
+        return position;
+    }
+
+    /**
+     * @param name square like "e4"
+     * @return square index
+     */
+    public static int square(String name) {
+        return Position.square(name.charAt(1) - '1', name.charAt(0) - 'a');
+    }
+
+    /**
+     * @param moveText source and target square like "e2e4"
+     * @return the legal packed move of the position between the squares, a Queen for promotions
+     */
+    public static int move(Position position, String moveText) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(position, position.getSideToMove(), moves);
+        int sourceSquare = square(moveText.substring(0, 2));
+        int targetSquare = square(moveText.substring(2, 4));
+        for (int i = 0; i < count; i++) {
+            if (PackedMove.getSource(moves[i]) == sourceSquare && PackedMove.getTarget(moves[i]) == targetSquare
+                    && (!PackedMove.isPromotion(moves[i])
+                    || PackedMove.getPromotionType(moves[i]) == Piece.TYPE_QUEEN)) {
+                return moves[i];
+            }
+        }
+        throw new IllegalArgumentException("no legal move " + moveText);
+    }
+}